@@ -0,0 +1,55 @@
+#!/bin/bash
+
+# Load generator for the microservices
+# Reports throughput and latency percentiles for one endpoint using curl and xargs only
+#
+# Usage: ./benchmark.sh [url] [json-body|-] [requests] [concurrency]
+#   json-body "-" sends GET requests instead of POST
+
+export URL=${1:-http://localhost:8080/order}
+export BODY=${2:-'{"customerName":"Bench Customer","productId":1,"quantity":1,"paymentMethod":"CREDIT_CARD"}'}
+REQUESTS=${3:-1000}
+CONCURRENCY=${4:-50}
+
+# Function to send one request and print "<http status> <seconds>"
+fire() {
+    if [ "$BODY" = "-" ]; then
+        curl -s -o /dev/null -w "%{http_code} %{time_total}\n" "$URL"
+    else
+        curl -s -o /dev/null -w "%{http_code} %{time_total}\n" \
+             -X POST -H "Content-Type: application/json" --data-raw "$BODY" "$URL"
+    fi
+}
+export -f fire
+
+results=$(mktemp)
+trap 'rm -f $results' EXIT
+
+echo "🚀 Benchmarking $URL"
+echo "   requests: $REQUESTS, concurrency: $CONCURRENCY"
+
+# Warm up connections, JIT and caches before measuring
+seq 50 | xargs -P 10 -I @@ bash -c fire > /dev/null
+
+start=$(date +%s.%N)
+seq $REQUESTS | xargs -P $CONCURRENCY -I @@ bash -c fire >> $results
+end=$(date +%s.%N)
+
+echo ""
+echo "📊 Results"
+awk -v start=$start -v end=$end '
+    { total++; if ($1 >= 200 && $1 < 300) ok++ }
+    END {
+        printf "   elapsed:     %.2f s\n", end - start
+        printf "   throughput:  %.1f req/s\n", total / (end - start)
+        printf "   2xx:         %d / %d\n", ok, total
+    }' $results
+awk '{ print $2 * 1000 }' $results | sort -n | awk '
+    function pct(p) { i = int(NR * p); return v[i > 0 ? i : 1] }
+    { v[NR] = $1 }
+    END {
+        printf "   p50:         %.1f ms\n", pct(0.50)
+        printf "   p95:         %.1f ms\n", pct(0.95)
+        printf "   p99:         %.1f ms\n", pct(0.99)
+        printf "   max:         %.1f ms\n", v[NR]
+    }'
@@ -14,6 +14,15 @@ CREATE TABLE IF NOT EXISTS orders (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+-- Hi/lo ID blocks (next_val is the next unallocated ID), see OrderIdAllocator
+CREATE TABLE IF NOT EXISTS id_generator (
+    name VARCHAR(64) PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+INSERT IGNORE INTO id_generator (name, next_val)
+SELECT 'orders', COALESCE(MAX(id), 0) + 1 FROM orders;
+
 -- Payments table
 CREATE TABLE IF NOT EXISTS payments (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -33,11 +42,35 @@ CREATE TABLE IF NOT EXISTS inventory (
     product_name VARCHAR(100) NOT NULL,
     quantity_available INT NOT NULL DEFAULT 0,
     reserved_quantity INT NOT NULL DEFAULT 0,
+    stock_version BIGINT NOT NULL DEFAULT 0,
     unit_price DECIMAL(10,2) NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+-- Stock buckets: available quantity of a sharded product, split across rows
+CREATE TABLE IF NOT EXISTS inventory_bucket (
+    product_id BIGINT NOT NULL,
+    bucket INT NOT NULL,
+    quantity_available INT NOT NULL DEFAULT 0,
+    reserved_quantity INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (product_id, bucket)
+);
+
+-- Reservation holds: reserved stock that expires unless committed or released
+CREATE TABLE IF NOT EXISTS inventory_hold (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    -- Units per stock bucket they were reserved from as bucket:units pairs, NULL for products that are not bucketed
+    buckets VARCHAR(255) NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'HELD',
+    expires_at TIMESTAMP(3) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_inventory_hold_status_expires (status, expires_at)
+);
+
 -- Insert sample inventory data
 INSERT INTO inventory (product_id, product_name, quantity_available, unit_price) VALUES
 (1, 'Laptop', 50, 999.99),
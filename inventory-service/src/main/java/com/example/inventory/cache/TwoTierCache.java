@@ -0,0 +1,111 @@
+package com.example.inventory.cache;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Read path of a two-tier cache: an in-process LongKeyNearCache (L1) in front of Redis (L2)
+ * L2 hits are copied into L1 unless the ID was invalidated while L2 was read. Writers publish the changed ID
+ * on the invalidation channel and every instance, including the writer, drops it from L1. Lookups are counted
+ * per tier as cache.gets{cache, tier=l1|l2, result=hit|miss}.
+ */
+public class TwoTierCache<V> implements MessageListener {
+    
+    private final String keyPrefix;
+    private final String invalidationChannel;
+    private final LongKeyNearCache<V> nearCache;
+    private final RedisTemplate<String, Object> redisTemplate;
+    
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    
+    public TwoTierCache(String name, String keyPrefix, LongKeyNearCache<V> nearCache,
+                        RedisTemplate<String, Object> redisTemplate, MeterRegistry meterRegistry) {
+        this.keyPrefix = keyPrefix;
+        this.invalidationChannel = "nearcache:invalidate:" + name;
+        this.nearCache = nearCache;
+        this.redisTemplate = redisTemplate;
+        
+        this.l1Hits = tierCounter(meterRegistry, name, "l1", "hit");
+        this.l1Misses = tierCounter(meterRegistry, name, "l1", "miss");
+        this.l2Hits = tierCounter(meterRegistry, name, "l2", "hit");
+        this.l2Misses = tierCounter(meterRegistry, name, "l2", "miss");
+        Gauge.builder("cache.size", nearCache, LongKeyNearCache::size)
+            .tag("cache", name).tag("tier", "l1")
+            .register(meterRegistry);
+        Gauge.builder("cache.evictions", nearCache, LongKeyNearCache::evictionCount)
+            .tag("cache", name).tag("tier", "l1")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * @return the cached value from L1 or L2, or null when neither tier has it
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long id) {
+        V value = nearCache.get(id);
+        if (value != null) {
+            l1Hits.increment();
+            return value;
+        }
+        l1Misses.increment();
+        
+        long stamp = nearCache.invalidationStamp(id);
+        Object cached = redisTemplate.opsForValue().get(keyPrefix + id);
+        if (cached == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        value = (V) cached;
+        nearCache.putIfNotInvalidated(id, value, stamp);
+        return value;
+    }
+    
+    /**
+     * @return the stamp to pass to putLocal, taken before loading the value from the database
+     */
+    public long invalidationStamp(long id) {
+        return nearCache.invalidationStamp(id);
+    }
+    
+    /**
+     * Caches a value loaded from the database, unless the ID was invalidated since the stamp was taken
+     */
+    public void putLocal(long id, V value, long stamp) {
+        nearCache.putIfNotInvalidated(id, value, stamp);
+    }
+    
+    public void evictLocal(long id) {
+        nearCache.invalidate(id);
+    }
+    
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+    
+    public void publishInvalidation(long id) {
+        redisTemplate.convertAndSend(invalidationChannel, id);
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object id = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (id instanceof Number number) {
+            nearCache.invalidate(number.longValue());
+        }
+    }
+    
+    private static Counter tierCounter(MeterRegistry meterRegistry, String name, String tier, String result) {
+        return Counter.builder("cache.gets")
+            .tag("cache", name).tag("tier", tier).tag("result", result)
+            .register(meterRegistry);
+    }
+}
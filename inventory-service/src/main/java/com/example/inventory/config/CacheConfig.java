@@ -0,0 +1,54 @@
+package com.example.inventory.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.util.unit.DataSize;
+
+import com.example.inventory.cache.LongKeyNearCache;
+import com.example.inventory.cache.TwoTierCache;
+import com.example.inventory.entity.Inventory;
+import com.example.inventory.service.ProductIdFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class CacheConfig {
+    
+    /**
+     * Near cache for inventory:product:{productId} lookups, bounded by entry count and approximate heap size
+     */
+    @Bean
+    public TwoTierCache<Inventory> inventoryCache(RedisTemplate<String, Object> redisTemplate,
+                                                  MeterRegistry meterRegistry,
+                                                  @Value("${inventory.near-cache.maximum-size:10000}") int maximumSize,
+                                                  @Value("${inventory.near-cache.maximum-weight:16MB}") DataSize maximumWeight,
+                                                  @Value("${inventory.near-cache.expire-after-write:30s}") Duration expireAfterWrite) {
+        LongKeyNearCache<Inventory> nearCache = new LongKeyNearCache<>(
+            maximumSize, maximumWeight.toBytes(), CacheConfig::estimateSize, expireAfterWrite.toNanos());
+        return new TwoTierCache<>("inventory", "inventory:product:", nearCache, redisTemplate, meterRegistry);
+    }
+    
+    @Bean
+    public RedisMessageListenerContainer nearCacheInvalidationContainer(RedisConnectionFactory connectionFactory,
+                                                                        TwoTierCache<Inventory> inventoryCache,
+                                                                        ProductIdFilter productIdFilter) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(inventoryCache, new ChannelTopic(inventoryCache.getInvalidationChannel()));
+        container.addMessageListener(productIdFilter, new ChannelTopic(productIdFilter.getProductAddedChannel()));
+        return container;
+    }
+    
+    // Object headers, boxed fields, BigDecimal price and timestamps plus the product name characters
+    private static int estimateSize(Inventory inventory) {
+        String productName = inventory.getProductName();
+        return 320 + (productName != null ? productName.length() * 2 : 0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.inventory.config;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Reports virtual threads pinned to their carrier, e.g. while blocking inside a synchronized block
+ * Listens to the JFR jdk.VirtualThreadPinned event, logs the offending stack and exports
+ * jvm.threads.virtual.pinned (count) and jvm.threads.virtual.pinned.duration (timer)
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+    
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    
+    private final Counter pinnedCounter;
+    private final Timer pinnedTimer;
+    private final Duration threshold;
+    
+    private RecordingStream recordingStream;
+    
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${virtual-threads.pinning.threshold:20ms}") Duration threshold) {
+        this.pinnedCounter = Counter.builder("jvm.threads.virtual.pinned")
+            .description("Virtual threads that blocked while pinned to a carrier thread")
+            .register(meterRegistry);
+        this.pinnedTimer = Timer.builder("jvm.threads.virtual.pinned.duration")
+            .description("Time virtual threads spent blocked while pinned")
+            .register(meterRegistry);
+        this.threshold = threshold;
+    }
+    
+    @Override
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        logger.info("Virtual thread pinning monitor started with threshold {}", threshold);
+    }
+    
+    @Override
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+            recordingStream = null;
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return recordingStream != null;
+    }
+    
+    private void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        pinnedTimer.record(event.getDuration());
+        
+        String stack = event.getStackTrace() == null ? "<no stack>" : event.getStackTrace().getFrames().stream()
+            .limit(12)
+            .map(VirtualThreadPinningMonitor::formatFrame)
+            .collect(Collectors.joining("\n\tat "));
+        logger.warn("Virtual thread pinned for {} ms on {}:\n\tat {}",
+                   event.getDuration().toMillis(), event.getThread() != null ? event.getThread().getJavaName() : "?", stack);
+    }
+    
+    private static String formatFrame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.inventory.controller;
 
+import com.example.inventory.dto.CatalogEntry;
+import com.example.inventory.dto.PriceUpdateRequest;
 import com.example.inventory.dto.ReservationRequest;
 import com.example.inventory.dto.ReservationResponse;
 import com.example.inventory.entity.Inventory;
@@ -8,6 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/")
 public class InventoryController {
@@ -26,6 +30,42 @@ public class InventoryController {
         }
     }
     
+    @PostMapping("/release")
+    public ResponseEntity<ReservationResponse> releaseInventory(@RequestBody ReservationRequest request) {
+        ReservationResponse response = inventoryService.releaseInventory(request);
+        
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    @PostMapping("/holds/{holdId}/commit")
+    public ResponseEntity<ReservationResponse> commitHold(@PathVariable Long holdId) {
+        ReservationResponse response = inventoryService.commitHold(holdId);
+        
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    @PostMapping("/holds/{holdId}/release")
+    public ResponseEntity<ReservationResponse> releaseHold(@PathVariable Long holdId) {
+        ReservationResponse response = inventoryService.releaseHold(holdId);
+        
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    // Stock is as of this instance's L1 copy: current for changes made here, up to
+    // inventory.near-cache.expire-after-write old for changes made elsewhere, and a reconcile interval
+    // behind Redis for hot products
     @GetMapping("/inventory/{productId}")
     public ResponseEntity<Inventory> getInventory(@PathVariable Long productId) {
         Inventory inventory = inventoryService.getInventoryByProductId(productId);
@@ -37,6 +77,25 @@ public class InventoryController {
         }
     }
     
+    @GetMapping("/catalog")
+    public ResponseEntity<List<CatalogEntry>> getCatalog() {
+        return ResponseEntity.ok(inventoryService.getCatalog());
+    }
+    
+    @PutMapping("/inventory/{productId}/price")
+    public ResponseEntity<CatalogEntry> updatePrice(@PathVariable Long productId, @RequestBody PriceUpdateRequest request) {
+        if (request.getUnitPrice() == null || request.getUnitPrice().signum() <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        CatalogEntry entry = inventoryService.updatePrice(productId, request.getUnitPrice());
+        
+        if (entry != null) {
+            return ResponseEntity.ok(entry);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Inventory Service is healthy");
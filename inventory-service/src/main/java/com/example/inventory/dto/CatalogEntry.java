@@ -0,0 +1,28 @@
+package com.example.inventory.dto;
+
+import java.math.BigDecimal;
+
+public class CatalogEntry {
+    private Long productId;
+    private String productName;
+    private BigDecimal unitPrice;
+    
+    // Constructors
+    public CatalogEntry() {}
+    
+    public CatalogEntry(Long productId, String productName, BigDecimal unitPrice) {
+        this.productId = productId;
+        this.productName = productName;
+        this.unitPrice = unitPrice;
+    }
+    
+    // Getters and Setters
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    
+    public String getProductName() { return productName; }
+    public void setProductName(String productName) { this.productName = productName; }
+    
+    public BigDecimal getUnitPrice() { return unitPrice; }
+    public void setUnitPrice(BigDecimal unitPrice) { this.unitPrice = unitPrice; }
+}
@@ -0,0 +1,18 @@
+package com.example.inventory.dto;
+
+import java.math.BigDecimal;
+
+public class PriceUpdateRequest {
+    private BigDecimal unitPrice;
+    
+    // Constructors
+    public PriceUpdateRequest() {}
+    
+    public PriceUpdateRequest(BigDecimal unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+    
+    // Getters and Setters
+    public BigDecimal getUnitPrice() { return unitPrice; }
+    public void setUnitPrice(BigDecimal unitPrice) { this.unitPrice = unitPrice; }
+}
@@ -9,6 +9,7 @@ public class ReservationResponse {
     private Integer reservedQuantity;
     private BigDecimal unitPrice;
     private BigDecimal totalAmount;
+    private Long holdId;
     
     // Constructors
     public ReservationResponse() {}
@@ -45,4 +46,7 @@ public class ReservationResponse {
     
     public BigDecimal getTotalAmount() { return totalAmount; }
     public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+    
+    public Long getHoldId() { return holdId; }
+    public void setHoldId(Long holdId) { this.holdId = holdId; }
 }
@@ -0,0 +1,24 @@
+package com.example.inventory.dto;
+
+/**
+ * Available quantity of a product together with the stock version it was read at
+ */
+public class StockLevel {
+    private Integer available;
+    private Long version;
+    
+    // Constructors
+    public StockLevel() {}
+    
+    public StockLevel(Integer available, Long version) {
+        this.available = available;
+        this.version = version;
+    }
+    
+    // Getters and Setters
+    public Integer getAvailable() { return available; }
+    public void setAvailable(Integer available) { this.available = available; }
+    
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
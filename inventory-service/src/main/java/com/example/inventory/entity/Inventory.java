@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "inventory")
+@EntityListeners(InventoryEntityListener.class)
 public class Inventory {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,6 +24,10 @@ public class Inventory {
     @Column(name = "reserved_quantity", nullable = false)
     private Integer reservedQuantity = 0;
     
+    // Bumped by every stock change, orders writes to the stock mirror
+    @Column(name = "stock_version", nullable = false)
+    private Long stockVersion = 0L;
+    
     @Column(name = "unit_price", nullable = false)
     private BigDecimal unitPrice;
     
@@ -69,6 +74,9 @@ public class Inventory {
     public Integer getReservedQuantity() { return reservedQuantity; }
     public void setReservedQuantity(Integer reservedQuantity) { this.reservedQuantity = reservedQuantity; }
     
+    public Long getStockVersion() { return stockVersion; }
+    public void setStockVersion(Long stockVersion) { this.stockVersion = stockVersion; }
+    
     public BigDecimal getUnitPrice() { return unitPrice; }
     public void setUnitPrice(BigDecimal unitPrice) { this.unitPrice = unitPrice; }
     
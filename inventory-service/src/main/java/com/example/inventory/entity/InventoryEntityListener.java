@@ -0,0 +1,38 @@
+package com.example.inventory.entity;
+
+import jakarta.persistence.PostPersist;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.inventory.service.ProductIdFilter;
+
+/**
+ * Keeps the product ID filter current when products are inserted through JPA
+ * The ID is announced once the inserting transaction commits, so a rolled-back insert is never published.
+ * Instantiated by Hibernate through Spring's bean container; the lazy reference breaks the cycle with the
+ * repository the filter scans.
+ */
+public class InventoryEntityListener {
+    
+    @Autowired
+    @Lazy
+    private ProductIdFilter productIdFilter;
+    
+    @PostPersist
+    public void onPersist(Inventory inventory) {
+        Long productId = inventory.getProductId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            productIdFilter.announce(productId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                productIdFilter.announce(productId);
+            }
+        });
+    }
+}
@@ -1,24 +1,45 @@
 package com.example.inventory.repository;
 
+import com.example.inventory.dto.CatalogEntry;
+import com.example.inventory.dto.StockLevel;
 import com.example.inventory.entity.Inventory;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface InventoryRepository extends JpaRepository<Inventory, Long> {
+public interface InventoryRepository extends JpaRepository<Inventory, Long>, InventoryRepositoryCustom {
     Optional<Inventory> findByProductId(Long productId);
     
+    List<Inventory> findByProductIdIn(Collection<Long> productIds);
+    
     @Modifying
     @Transactional
-    @Query("UPDATE Inventory i SET i.reservedQuantity = i.reservedQuantity + :quantity WHERE i.productId = :productId AND i.quantityAvailable >= :quantity")
-    int reserveQuantity(@Param("productId") Long productId, @Param("quantity") Integer quantity);
+    @Query("UPDATE Inventory i SET i.unitPrice = :unitPrice WHERE i.productId = :productId")
+    int updateUnitPrice(@Param("productId") Long productId, @Param("unitPrice") BigDecimal unitPrice);
+    
+    @Query("SELECT new com.example.inventory.dto.CatalogEntry(i.productId, i.productName, i.unitPrice) FROM Inventory i")
+    List<CatalogEntry> findCatalog();
+    
+    @Query("SELECT new com.example.inventory.dto.StockLevel(i.quantityAvailable, i.stockVersion) FROM Inventory i WHERE i.productId = :productId")
+    Optional<StockLevel> findStockLevel(@Param("productId") Long productId);
     
     @Query("SELECT CASE WHEN i.quantityAvailable >= :quantity THEN true ELSE false END FROM Inventory i WHERE i.productId = :productId")
     boolean isQuantityAvailable(@Param("productId") Long productId, @Param("quantity") Integer quantity);
+    
+    // Integer.MIN_VALUE makes MySQL Connector/J stream rows instead of reading the whole result into memory
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"))
+    @Query("SELECT i.productId FROM Inventory i")
+    Stream<Long> streamAllProductIds();
 }
@@ -0,0 +1,31 @@
+package com.example.inventory.repository;
+
+import java.util.Optional;
+
+import com.example.inventory.dto.StockLevel;
+
+public interface InventoryRepositoryCustom {
+    
+    /**
+     * Checks availability and moves quantity from available to reserved in one conditional UPDATE
+     *
+     * @return the stock level after the reservation, or empty when the product is missing or has less
+     *         than quantity available
+     */
+    Optional<StockLevel> reserveAndGetStock(Long productId, Integer quantity);
+    
+    /**
+     * Moves quantity from reserved back to available in one conditional UPDATE
+     *
+     * @return the stock level after the release, or empty when the product is missing or has less than
+     *         quantity reserved
+     */
+    Optional<StockLevel> releaseAndGetStock(Long productId, Integer quantity);
+    
+    /**
+     * Turns reserved quantity into a sale by removing it from reserved
+     *
+     * @return the stock level after the commit, or empty when the product is missing
+     */
+    Optional<StockLevel> commitAndGetStock(Long productId, Integer quantity);
+}
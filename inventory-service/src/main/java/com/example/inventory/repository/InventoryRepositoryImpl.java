@@ -0,0 +1,82 @@
+package com.example.inventory.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import com.example.inventory.dto.StockLevel;
+
+/**
+ * JDBC fragment of InventoryRepository for statements JPQL cannot express
+ */
+public class InventoryRepositoryImpl implements InventoryRepositoryCustom {
+    
+    // LAST_INSERT_ID(expr) stores a value in the OK packet, where Connector/J exposes it as the generated
+    // key - the result comes back without a second statement. MySQL applies single-table assignments left
+    // to right, so the packed value carries the new available count and the bumped stock version.
+    private static final String STOCK_VERSION_ASSIGNMENT =
+        "stock_version = LAST_INSERT_ID(((stock_version + 1) << 32) | quantity_available) >> 32 ";
+    
+    private static final String RESERVE_SQL =
+        "UPDATE inventory " +
+        "SET quantity_available = quantity_available - ?, " +
+        "    reserved_quantity = reserved_quantity + ?, " +
+        "    " + STOCK_VERSION_ASSIGNMENT +
+        "WHERE product_id = ? AND quantity_available >= ?";
+    
+    private static final String RELEASE_SQL =
+        "UPDATE inventory " +
+        "SET reserved_quantity = reserved_quantity - ?, " +
+        "    quantity_available = quantity_available + ?, " +
+        "    " + STOCK_VERSION_ASSIGNMENT +
+        "WHERE product_id = ? AND reserved_quantity >= ?";
+    
+    // No guard on the reserved quantity: the hold transition makes each commit happen once, and for hot
+    // products the reserved quantity reaches MySQL only with the next reconcile pass
+    private static final String COMMIT_SQL =
+        "UPDATE inventory " +
+        "SET reserved_quantity = reserved_quantity - ?, " +
+        "    " + STOCK_VERSION_ASSIGNMENT +
+        "WHERE product_id = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public Optional<StockLevel> reserveAndGetStock(Long productId, Integer quantity) {
+        return updateAndGetStock(RESERVE_SQL, quantity, quantity, productId, quantity);
+    }
+    
+    @Override
+    public Optional<StockLevel> releaseAndGetStock(Long productId, Integer quantity) {
+        return updateAndGetStock(RELEASE_SQL, quantity, quantity, productId, quantity);
+    }
+    
+    @Override
+    public Optional<StockLevel> commitAndGetStock(Long productId, Integer quantity) {
+        return updateAndGetStock(COMMIT_SQL, quantity, productId);
+    }
+    
+    private Optional<StockLevel> updateAndGetStock(String sql, Object... parameters) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int updated = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return statement;
+        }, keyHolder);
+        
+        if (updated == 0) {
+            return Optional.empty();
+        }
+        // The version is at least 1 after an update, so the packed value is never the "no key" 0
+        long packed = keyHolder.getKey().longValue();
+        return Optional.of(new StockLevel((int) (packed & 0xFFFFFFFFL), packed >>> 32));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.inventory.scheduling;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel for long IDs with millisecond deadlines
+ * Level 0 has one slot per tick; each higher level has one slot per full rotation of the level below.
+ * Scheduling appends the ID to one slot (O(1), no per-entry objects). Whenever a level completes a rotation,
+ * the next slot of the level above is cascaded down, so an entry moves at most once per level before it fires.
+ * There is no cancel: callers treat fired IDs as candidates and ignore those already settled.
+ */
+public class HierarchicalTimingWheel {
+    
+    private static final int INITIAL_SLOT_CAPACITY = 4;
+    
+    private final long tickMillis;
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int levels;
+    
+    // slots[level][slot] holds IDs and their deadline ticks in parallel arrays
+    private final long[][][] slotIds;
+    private final long[][][] slotDeadlines;
+    private final int[][] slotSizes;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private long currentTick;
+    private long size;
+    
+    /**
+     * @param tickMillis resolution; deadlines fire within one tick after they pass
+     * @param wheelSize  slots per level, rounded up to a power of two
+     * @param levels     number of levels; deadlines beyond the span of the top level are re-cascaded
+     */
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+        this.tickMillis = tickMillis;
+        int slots = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        this.wheelBits = Integer.numberOfTrailingZeros(slots);
+        this.wheelMask = slots - 1;
+        this.levels = levels;
+        this.slotIds = new long[levels][slots][];
+        this.slotDeadlines = new long[levels][slots][];
+        this.slotSizes = new int[levels][slots];
+        this.currentTick = startMillis / tickMillis;
+    }
+    
+    public void schedule(long id, long deadlineMillis) {
+        // Round up so an entry never fires before its deadline
+        long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        lock.lock();
+        try {
+            place(id, Math.max(deadlineTick, currentTick + 1));
+            size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Moves the wheel up to now and returns the IDs whose deadline passed
+     */
+    public long[] advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        long[] expired = new long[0];
+        int expiredCount = 0;
+        lock.lock();
+        try {
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade();
+                
+                int slot = (int) (currentTick & wheelMask);
+                int count = slotSizes[0][slot];
+                if (count > 0) {
+                    if (expiredCount + count > expired.length) {
+                        expired = Arrays.copyOf(expired, Math.max(expiredCount + count, expired.length * 2));
+                    }
+                    System.arraycopy(slotIds[0][slot], 0, expired, expiredCount, count);
+                    expiredCount += count;
+                    clear(0, slot);
+                }
+            }
+            size -= expiredCount;
+        } finally {
+            lock.unlock();
+        }
+        return expiredCount == expired.length ? expired : Arrays.copyOf(expired, expiredCount);
+    }
+    
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * At the start of each level's period, redistributes that period's slot into the levels below
+     */
+    private void cascade() {
+        for (int level = 1; level < levels; level++) {
+            int shift = level * wheelBits;
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                return;
+            }
+            int slot = (int) ((currentTick >>> shift) & wheelMask);
+            int count = slotSizes[level][slot];
+            if (count == 0) {
+                continue;
+            }
+            long[] ids = slotIds[level][slot];
+            long[] deadlines = slotDeadlines[level][slot];
+            clear(level, slot);
+            for (int i = 0; i < count; i++) {
+                place(ids[i], deadlines[i]);
+            }
+        }
+    }
+    
+    /**
+     * Picks the lowest level whose period for the deadline lies within one rotation of the current one
+     */
+    private void place(long id, long deadlineTick) {
+        for (int level = 0; level < levels; level++) {
+            int shift = level * wheelBits;
+            long deadlinePeriod = deadlineTick >>> shift;
+            long currentPeriod = currentTick >>> shift;
+            // Above level 0 the current period was already cascaded, so only later periods can go there
+            if (deadlinePeriod - currentPeriod <= wheelMask && (level == 0 || deadlinePeriod > currentPeriod)) {
+                append(level, (int) (deadlinePeriod & wheelMask), id, deadlineTick);
+                return;
+            }
+        }
+        // Beyond the top level's span: park in its last reachable slot and re-place on cascade
+        int top = levels - 1;
+        long lastPeriod = (currentTick >>> (top * wheelBits)) + wheelMask;
+        append(top, (int) (lastPeriod & wheelMask), id, deadlineTick);
+    }
+    
+    private void append(int level, int slot, long id, long deadlineTick) {
+        int count = slotSizes[level][slot];
+        long[] ids = slotIds[level][slot];
+        if (ids == null || count == ids.length) {
+            int capacity = ids == null ? INITIAL_SLOT_CAPACITY : ids.length * 2;
+            slotIds[level][slot] = ids = ids == null ? new long[capacity] : Arrays.copyOf(ids, capacity);
+            slotDeadlines[level][slot] = slotDeadlines[level][slot] == null
+                ? new long[capacity] : Arrays.copyOf(slotDeadlines[level][slot], capacity);
+        }
+        ids[count] = id;
+        slotDeadlines[level][slot][count] = deadlineTick;
+        slotSizes[level][slot] = count + 1;
+    }
+    
+    private void clear(int level, int slot) {
+        // Drop the arrays so a burst does not pin memory in a slot that is usually empty
+        slotIds[level][slot] = null;
+        slotDeadlines[level][slot] = null;
+        slotSizes[level][slot] = 0;
+    }
+}
@@ -6,12 +6,22 @@ import com.example.inventory.repository.InventoryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class AsyncInventoryUpdateService {
@@ -24,88 +34,94 @@ public class AsyncInventoryUpdateService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
     
+    // Products whose analytics changed since the last flush
+    private final Set<Long> dirtyAnalytics = ConcurrentHashMap.newKeySet();
+    
     /**
      * Async inventory restock notification
-     * Demonstrates async database operations with tracing
+     * Called once per threshold crossing with the stock level the reservation produced, so no re-read is needed
      */
     @Async("taskExecutor")
-    public CompletableFuture<Void> scheduleRestockNotification(Long productId, Integer threshold) {
-        try {
-            // Simulate processing delay
-            Thread.sleep(200);
-            
-            // Check current inventory - database operation traced automatically
-            Inventory inventory = inventoryRepository.findByProductId(productId).orElse(null);
-            
-            if (inventory != null && inventory.getQuantityAvailable() < threshold) {
-                // Cache restock notification
-                String notificationKey = "restock:notification:" + productId;
-                String notificationData = String.format(
-                    "{\"productId\":%d,\"currentStock\":%d,\"threshold\":%d,\"status\":\"PENDING\"}", 
-                    productId, inventory.getQuantityAvailable(), threshold);
-                
-                redisTemplate.opsForValue().set(notificationKey, notificationData, Duration.ofDays(7));
-                
-                // Update notification counter
-                redisTemplate.opsForValue().increment("restock:notifications:count", 1);
-                
-                logger.info("📦 Restock notification scheduled for product " + productId);
-            }
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Restock notification failed", e);
-        }
+    public CompletableFuture<Void> scheduleRestockNotification(Long productId, int currentStock, int threshold) {
+        // Cache restock notification
+        String notificationKey = "restock:notification:" + productId;
+        String notificationData = String.format(
+            "{\"productId\":%d,\"currentStock\":%d,\"threshold\":%d,\"status\":\"PENDING\"}",
+            productId, currentStock, threshold);
+        
+        redisTemplate.opsForValue().set(notificationKey, notificationData, Duration.ofDays(7));
+        
+        // Update notification counter
+        redisTemplate.opsForValue().increment("restock:notifications:count", 1);
+        
+        logger.info("📦 Restock notification scheduled for product " + productId);
         
         return CompletableFuture.completedFuture(null);
     }
     
     /**
-     * Async inventory analytics update
-     * Shows parallel async operations with database and cache
+     * Marks a product's analytics as out of date
+     * Repeated calls within one window collapse into a single recomputation by flushInventoryAnalytics.
      */
-    @Async("taskExecutor")
-    public CompletableFuture<String> updateInventoryAnalytics(Long productId) {
+    public void markAnalyticsDirty(Long productId) {
+        dirtyAnalytics.add(productId);
+    }
+    
+    /**
+     * Recomputes the analytics of every product marked since the last run
+     * The rows come from one IN query and all results are written in one Redis pipeline.
+     */
+    @Scheduled(fixedDelayString = "${inventory.analytics.window:5s}")
+    public void flushInventoryAnalytics() {
+        List<Long> productIds = new ArrayList<>();
+        for (Iterator<Long> it = dirtyAnalytics.iterator(); it.hasNext(); ) {
+            productIds.add(it.next());
+            it.remove();
+        }
+        if (productIds.isEmpty()) {
+            return;
+        }
+        
+        List<Inventory> inventories;
         try {
-            // Simulate analytics processing
-            Thread.sleep(600);
-            
-            // Get inventory data - traced automatically
-            Inventory inventory = inventoryRepository.findByProductId(productId).orElse(null);
-            
-            if (inventory != null) {
-                // Calculate analytics
-                double turnoverRate = (double) inventory.getReservedQuantity() / 
-                                    (inventory.getQuantityAvailable() + inventory.getReservedQuantity());
-                
-                // Cache analytics data
-                String analyticsKey = "analytics:inventory:" + productId;
-                String analyticsData = String.format(
-                    "{\"productId\":%d,\"turnoverRate\":%.2f,\"totalStock\":%d,\"lastUpdated\":%d}", 
-                    productId, turnoverRate, 
-                    inventory.getQuantityAvailable() + inventory.getReservedQuantity(),
-                    System.currentTimeMillis());
-                
-                redisTemplate.opsForValue().set(analyticsKey, analyticsData, Duration.ofHours(6));
-                
-                // Update daily analytics summary
-                String dailyKey = "analytics:daily:" + java.time.LocalDate.now();
-                redisTemplate.opsForHash().increment(dailyKey, "products_analyzed", 1);
-                redisTemplate.expire(dailyKey, Duration.ofDays(30));
-                
-                String result = "Analytics updated for product " + productId + " (turnover: " + 
-                              String.format("%.1f%%", turnoverRate * 100) + ")";
-                logger.info("📊 " + result);
-                
-                return CompletableFuture.completedFuture(result);
-            }
-            
-            return CompletableFuture.completedFuture("Product not found: " + productId);
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Analytics update failed", e);
+            inventories = inventoryRepository.findByProductIdIn(productIds);
+        } catch (RuntimeException e) {
+            // Mark them again so the next window retries
+            dirtyAnalytics.addAll(productIds);
+            logger.error("❌ Analytics update failed for {} products - {}", productIds.size(), e.getMessage());
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        String dailyKey = "analytics:daily:" + LocalDate.now();
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> stringOperations = (RedisOperations<String, Object>) operations;
+                    for (Inventory inventory : inventories) {
+                        int totalStock = inventory.getQuantityAvailable() + inventory.getReservedQuantity();
+                        double turnoverRate = totalStock > 0 ? (double) inventory.getReservedQuantity() / totalStock : 0;
+                        String analyticsData = String.format(
+                            "{\"productId\":%d,\"turnoverRate\":%.2f,\"totalStock\":%d,\"lastUpdated\":%d}",
+                            inventory.getProductId(), turnoverRate, totalStock, now);
+                        stringOperations.opsForValue().set(
+                            "analytics:inventory:" + inventory.getProductId(), analyticsData, Duration.ofHours(6));
+                    }
+                    // Update daily analytics summary
+                    stringOperations.opsForHash().increment(dailyKey, "products_analyzed", inventories.size());
+                    stringOperations.expire(dailyKey, Duration.ofDays(30));
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            // Mark them again so the next window rewrites them
+            dirtyAnalytics.addAll(productIds);
+            logger.error("❌ Analytics write failed for {} products - {}", productIds.size(), e.getMessage());
+            return;
         }
+        logger.info("📊 Analytics updated for {} products", inventories.size());
     }
     
     /**
@@ -0,0 +1,256 @@
+package com.example.inventory.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.inventory.cache.TwoTierCache;
+import com.example.inventory.entity.Inventory;
+import com.example.inventory.repository.InventoryRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Redis-authoritative stock for flagged hot products
+ * Reservations run as one Lua script that checks and decrements the counter and records the delta;
+ * the reconciler applies the deltas to the inventory table in one transaction and only then subtracts them
+ * from Redis. MySQL therefore lags Redis by at most one reconcile interval for these products. A Redis lease
+ * lets only one instance reconcile at a time, so no delta is applied twice.
+ */
+@Service
+public class HotSkuReservationService implements MeterBinder {
+    
+    private static final Logger logger = LoggerFactory.getLogger(HotSkuReservationService.class);
+    
+    private static final long INSUFFICIENT = -1;
+    private static final long NOT_LOADED = -2;
+    
+    private static final String LEASE_KEY = "inventory:hot:reconcile-lease";
+    
+    // Bumps stock_version so the refreshed snapshot passes the populate fence
+    private static final String APPLY_DELTA_SQL =
+        "UPDATE inventory SET quantity_available = quantity_available - ?, " +
+        "reserved_quantity = reserved_quantity + ?, stock_version = stock_version + 1 WHERE product_id = ?";
+    
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    
+    @Autowired
+    private TwoTierCache<Inventory> inventoryCache;
+    
+    @Value("${inventory.hot-sku.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${inventory.hot-sku.product-ids:}")
+    private Set<Long> hotProductIds;
+    
+    // Must outlast one reconcile pass; a holder that dies is replaced once it expires
+    @Value("${inventory.hot-sku.reconcile-lease:30s}")
+    private Duration reconcileLease;
+    
+    // Identifies this instance as the lease holder
+    private final String instanceId = UUID.randomUUID().toString();
+    
+    private final DefaultRedisScript<Long> reserveScript = script("scripts/hot-sku-reserve.lua");
+    private final DefaultRedisScript<Long> releaseScript = script("scripts/hot-sku-release.lua");
+    private final DefaultRedisScript<Long> leaseReleaseScript = script("scripts/hot-sku-lease-release.lua");
+    
+    private volatile long pendingUnits;
+    private volatile long lastBatchUnits;
+    private volatile long lastReconciledMillis = System.currentTimeMillis();
+    
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("inventory.hot.reconcile.units", this, service -> service.lastBatchUnits)
+            .description("Reserved units moved from Redis to MySQL by the last reconcile pass")
+            .register(meterRegistry);
+        Gauge.builder("inventory.hot.reconcile.lag", this,
+                      service -> (System.currentTimeMillis() - service.lastReconciledMillis) / 1000.0)
+            .baseUnit("seconds")
+            .description("Time since MySQL was last brought up to date with Redis")
+            .register(meterRegistry);
+        Gauge.builder("inventory.hot.reconcile.pending", this, service -> service.pendingUnits)
+            .description("Reserved units in Redis not yet written to MySQL, summed over hot products")
+            .register(meterRegistry);
+    }
+    
+    public boolean isHot(Long productId) {
+        return enabled && hotProductIds.contains(productId);
+    }
+    
+    /**
+     * @return the remaining stock, or empty when the product is missing or has too little stock
+     */
+    public OptionalInt reserve(Long productId, int quantity) {
+        long result = runScript(reserveScript, productId, quantity);
+        return result < 0 ? OptionalInt.empty() : OptionalInt.of((int) result);
+    }
+    
+    public boolean release(Long productId, int quantity) {
+        return runScript(releaseScript, productId, quantity) >= 0;
+    }
+    
+    /**
+     * Loads the scripts into Redis once and seeds the counters of hot products missing from Redis
+     * Existing counters are kept: after a restart Redis is still the authority and its pending deltas
+     * are reconciled as usual.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!enabled) {
+            return;
+        }
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.scriptingCommands().scriptLoad(reserveScript.getScriptAsString().getBytes());
+            connection.scriptingCommands().scriptLoad(releaseScript.getScriptAsString().getBytes());
+            return null;
+        });
+        hotProductIds.forEach(this::loadCounter);
+        logger.info("Hot SKU mode enabled for products: {}", hotProductIds);
+    }
+    
+    @Scheduled(fixedDelayString = "${inventory.hot-sku.reconcile-interval:1s}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        Boolean leased = stringRedisTemplate.opsForValue().setIfAbsent(LEASE_KEY, instanceId, reconcileLease);
+        if (!Boolean.TRUE.equals(leased)) {
+            // Another instance is reconciling; only keep the pending gauge current
+            pendingUnits = readDeltas().stream().mapToLong(delta -> Math.abs((Long) delta[0])).sum();
+            return;
+        }
+        List<Object[]> deltas;
+        try {
+            // Read under the lease, so no other instance can apply the same deltas
+            deltas = readDeltas();
+            pendingUnits = deltas.stream().mapToLong(delta -> Math.abs((Long) delta[0])).sum();
+            if (!deltas.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, deltas));
+                } catch (RuntimeException e) {
+                    // Nothing was applied and nothing was taken from Redis - the next pass retries the same deltas
+                    logger.error("Hot SKU reconciliation of {} products failed: {}", deltas.size(), e.getMessage());
+                    return;
+                }
+                // Subtract exactly what was applied; reservations made since the read stay pending for the next pass
+                for (Object[] delta : deltas) {
+                    stringRedisTemplate.opsForValue().decrement(pendingKey((Long) delta[2]), (Long) delta[0]);
+                }
+                logger.debug("Reconciled {} hot products into MySQL", deltas.size());
+            }
+            lastBatchUnits = pendingUnits;
+            pendingUnits = 0;
+            lastReconciledMillis = System.currentTimeMillis();
+        } finally {
+            stringRedisTemplate.execute(leaseReleaseScript, List.of(LEASE_KEY), instanceId);
+        }
+        
+        for (Object[] delta : deltas) {
+            refreshSnapshot((Long) delta[2]);
+        }
+    }
+    
+    /**
+     * Pending deltas as batch arguments (delta, delta, product ID), skipping products with nothing to apply
+     */
+    private List<Object[]> readDeltas() {
+        List<Object[]> deltas = new ArrayList<>();
+        for (Long productId : hotProductIds) {
+            // Read only: the delta stays in Redis until MySQL has committed it
+            String pending = stringRedisTemplate.opsForValue().get(pendingKey(productId));
+            long delta = pending != null ? Long.parseLong(pending) : 0;
+            if (delta != 0) {
+                deltas.add(new Object[] {delta, delta, productId});
+            }
+        }
+        return deltas;
+    }
+    
+    /**
+     * Reservations of hot products never write through to the cached snapshot, so each reconciled product
+     * gets its snapshot reloaded from the row it just changed
+     */
+    private void refreshSnapshot(Long productId) {
+        try {
+            inventoryRepository.findByProductId(productId).ifPresent(productSnapshotCache::populate);
+            inventoryCache.evictLocal(productId);
+        } catch (RuntimeException e) {
+            logger.warn("Refreshing snapshot of hot productId: {} failed - {}", productId, e.getMessage());
+        }
+    }
+    
+    private long runScript(DefaultRedisScript<Long> script, Long productId, int quantity) {
+        List<String> keys = List.of(availableKey(productId), pendingKey(productId));
+        Long result = stringRedisTemplate.execute(script, keys, String.valueOf(quantity));
+        if (result != null && result == NOT_LOADED && loadCounter(productId)) {
+            result = stringRedisTemplate.execute(script, keys, String.valueOf(quantity));
+        }
+        return result != null ? result : INSUFFICIENT;
+    }
+    
+    /**
+     * Seeds the Redis counter from MySQL with SETNX, so a concurrent loader or live counter always wins
+     */
+    private boolean loadCounter(Long productId) {
+        Inventory inventory = inventoryRepository.findByProductId(productId).orElse(null);
+        if (inventory == null) {
+            return false;
+        }
+        Boolean seeded = stringRedisTemplate.opsForValue()
+            .setIfAbsent(availableKey(productId), String.valueOf(inventory.getQuantityAvailable()));
+        if (Boolean.TRUE.equals(seeded)) {
+            logger.info("Seeded hot SKU counter for productId: {} with {} units from MySQL",
+                       productId, inventory.getQuantityAvailable());
+        }
+        return true;
+    }
+    
+    // Hash tag keeps both keys of a product in one cluster slot for the scripts
+    private static String availableKey(Long productId) {
+        return "inventory:hot:{" + productId + "}:available";
+    }
+    
+    private static String pendingKey(Long productId) {
+        return "inventory:hot:{" + productId + "}:pending";
+    }
+    
+    private static DefaultRedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
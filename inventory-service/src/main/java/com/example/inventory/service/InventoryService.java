@@ -2,23 +2,34 @@ package com.example.inventory.service;
 
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.example.inventory.cache.TwoTierCache;
+import com.example.inventory.dto.CatalogEntry;
 import com.example.inventory.dto.ReservationRequest;
 import com.example.inventory.dto.ReservationResponse;
+import com.example.inventory.dto.StockLevel;
 import com.example.inventory.entity.Inventory;
 import com.example.inventory.repository.InventoryRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @Service
 public class InventoryService {
-
+    
     private static final Logger logger = LoggerFactory.getLogger(InventoryService.class);
     
     @Autowired
@@ -27,95 +38,387 @@ public class InventoryService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
     
+    @Autowired
+    private TwoTierCache<Inventory> inventoryCache;
+    
     @Autowired
     private AsyncInventoryUpdateService asyncInventoryUpdateService;
     
-    @Transactional
+    @Autowired
+    private HotSkuReservationService hotSkuReservationService;
+    
+    @Autowired
+    private ReservationCombiner reservationCombiner;
+    
+    @Autowired
+    private StockBucketService stockBucketService;
+    
+    @Autowired
+    private ProductIdFilter productIdFilter;
+    
+    @Autowired
+    private StockMirror stockMirror;
+    
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    
+    @Autowired
+    private ReservationHoldService reservationHoldService;
+    
+    @Autowired
+    private LowStockDetector lowStockDetector;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // Subscribers (order-service's product catalog) keep prices in memory from these notifications
+    @Value("${inventory.catalog.price-channel:catalog:price-changed}")
+    private String priceChannel;
+    
+    // Overdue holds younger than this are left to the instance whose timing wheel tracks them
+    @Value("${inventory.holds.sweep-grace:1m}")
+    private Duration holdSweepGrace;
+    
+    /**
+     * Not transactional: the reservation is a single auto-committed statement, so no connection is
+     * held across the Redis calls around it
+     */
     public ReservationResponse reserveInventory(ReservationRequest request) {
         Long productId = request.getProductId();
         Integer quantity = request.getQuantity();
         
         logger.info("Starting inventory reservation for productId: {} and quantity: {}", productId, quantity);
         
+        // Unknown products are rejected before any Redis or MySQL call
+        if (!productIdFilter.mightExist(productId)) {
+            logger.warn("Product not found for productId: {} (filtered)", productId);
+            return new ReservationResponse(false, "Product not found");
+        }
+        
         // Cache key for inventory check
         String cacheKey = "inventory:check:" + productId;
         
-        // Check Redis cache first
-        String cachedResult = (String) redisTemplate.opsForValue().get(cacheKey);
-        if ("INSUFFICIENT".equals(cachedResult)) {
-            logger.debug("Insufficient inventory found in cache for productId: {}", productId);
-            return new ReservationResponse(false, "Insufficient inventory (cached result)");
+        // Row-backed products are checked against the stock mirror, so the row is only touched when stock is there
+        boolean mirrored = isMirrored(productId);
+        if (mirrored) {
+            OptionalInt available = stockMirror.getAvailable(productId);
+            if (available.isEmpty()) {
+                if ("NOT_FOUND".equals(redisTemplate.opsForValue().get(cacheKey))) {
+                    logger.debug("Missing product found in cache for productId: {}", productId);
+                    return new ReservationResponse(false, "Product not found (cached result)");
+                }
+                available = stockMirror.refresh(productId);
+                if (available.isEmpty()) {
+                    logger.warn("Product not found for productId: {}", productId);
+                    // Cache the negative result
+                    redisTemplate.opsForValue().set(cacheKey, "NOT_FOUND", Duration.ofMinutes(5));
+                    return new ReservationResponse(false, "Product not found");
+                }
+            }
+            // A low level may predate a restock made directly in MySQL; now and then the row gets to decide
+            if (available.getAsInt() < quantity && !stockMirror.tryRecheck(productId)) {
+                logger.warn("Insufficient inventory for productId: {} - requested: {}, available: {}",
+                           productId, quantity, available.getAsInt());
+                stockMirror.recordRejection();
+                return new ReservationResponse(false, "Insufficient inventory available");
+            }
         }
         
-        // Find inventory by product ID
-        logger.debug("Looking up inventory for productId: {}", productId);
-        Optional<Inventory> inventoryOpt = inventoryRepository.findByProductId(productId);
-        if (inventoryOpt.isEmpty()) {
-            logger.warn("Product not found for productId: {}", productId);
-            // Cache the negative result
-            redisTemplate.opsForValue().set(cacheKey, "NOT_FOUND", Duration.ofMinutes(5));
-            return new ReservationResponse(false, "Product not found");
+        // Check availability and reserve atomically - no read-modify-write
+        logger.info("Attempting to reserve {} units for productId: {}", quantity, productId);
+        Map<Integer, Integer> buckets = null;
+        OptionalInt remaining;
+        if (isBucketed(productId)) {
+            // The hold records the buckets, so it is committed or released against the ones holding its units
+            Optional<StockBucketService.BucketReservation> reserved = stockBucketService.reserve(productId, quantity);
+            buckets = reserved.map(StockBucketService.BucketReservation::getBuckets).orElse(null);
+            remaining = reserved.isPresent() ? OptionalInt.of(reserved.get().getRemaining()) : OptionalInt.empty();
+        } else {
+            remaining = reserveStock(productId, quantity);
         }
-        
-        Inventory inventory = inventoryOpt.get();
-        logger.debug("Found inventory for productId: {} with available quantity: {}", 
-                    productId, inventory.getQuantityAvailable());
-        
-        // Check if quantity is available
-        if (inventory.getQuantityAvailable() < quantity) {
-            logger.warn("Insufficient inventory for productId: {} - requested: {}, available: {}", 
-                       productId, quantity, inventory.getQuantityAvailable());
-            // Cache the insufficient inventory result
-            redisTemplate.opsForValue().set(cacheKey, "INSUFFICIENT", Duration.ofMinutes(2));
+        if (remaining.isEmpty()) {
+            if (mirrored) {
+                // Lost a race for the last units, or the mirror was behind: resync it from MySQL
+                stockMirror.refresh(productId);
+            } else if (getInventoryByProductId(productId) == null) {
+                // Slow path only: tell a missing product apart from insufficient stock
+                logger.warn("Product not found for productId: {}", productId);
+                redisTemplate.opsForValue().set(cacheKey, "NOT_FOUND", Duration.ofMinutes(5));
+                return new ReservationResponse(false, "Product not found");
+            }
+            logger.warn("Insufficient inventory for productId: {} - requested: {}", productId, quantity);
             return new ReservationResponse(false, "Insufficient inventory available");
         }
+        logger.info("Successfully reserved {} units for productId: {} - remaining available: {}",
+                   quantity, productId, remaining.getAsInt());
         
-        // Reserve the quantity
-        logger.info("Attempting to reserve {} units for productId: {}", quantity, productId);
-        int updated = inventoryRepository.reserveQuantity(productId, quantity);
-        if (updated > 0) {
-            // Update available quantity
-            inventory.setQuantityAvailable(inventory.getQuantityAvailable() - quantity);
-            inventoryRepository.save(inventory);
-            logger.info("Successfully reserved {} units for productId: {} - remaining available: {}", 
-                       quantity, productId, inventory.getQuantityAvailable());
-            
-            // Calculate total amount
-            BigDecimal totalAmount = inventory.getUnitPrice().multiply(new BigDecimal(quantity));
-            logger.debug("Calculated total amount: {} for quantity: {} at unit price: {}", 
-                        totalAmount, quantity, inventory.getUnitPrice());
-            
-            // Cache successful reservation
-            redisTemplate.opsForValue().set("inventory:reserved:" + productId, quantity.toString(), Duration.ofMinutes(30));
-            logger.debug("Cached successful reservation for productId: {}", productId);
-            
-            // Remove any negative cache entries
-            redisTemplate.delete(cacheKey);
-            
-            // Trigger async inventory management operations - traced automatically by OpenTelemetry
-            logger.info("Triggering async inventory operations for productId: {}", productId);
-            triggerAsyncInventoryOperations(productId, quantity);
-            
-            return new ReservationResponse(
-                true, 
-                "Inventory reserved successfully", 
-                productId, 
-                quantity, 
-                inventory.getUnitPrice(), 
-                totalAmount
-            );
+        // The reservation becomes a hold that expires unless it is committed or released first
+        long holdId;
+        try {
+            holdId = reservationHoldService.create(productId, quantity, buckets);
+        } catch (RuntimeException e) {
+            logger.error("Failed to record hold for productId: {}, giving the stock back - {}", productId, e.getMessage());
+            if (buckets == null) {
+                releaseStock(productId, null, quantity);
+            } else {
+                buckets.forEach((bucket, units) -> releaseStock(productId, bucket, units));
+            }
+            return new ReservationResponse(false, "Failed to record reservation hold");
+        }
+        
+        // Price and name come from the cached product snapshot, which price updates evict
+        Inventory inventory = getInventoryByProductId(productId);
+        
+        // Calculate total amount
+        BigDecimal totalAmount = inventory.getUnitPrice().multiply(new BigDecimal(quantity));
+        logger.debug("Calculated total amount: {} for quantity: {} at unit price: {}",
+                    totalAmount, quantity, inventory.getUnitPrice());
+        
+        // Cache successful reservation
+        redisTemplate.opsForValue().set("inventory:reserved:" + productId, quantity.toString(), Duration.ofMinutes(30));
+        logger.debug("Cached successful reservation for productId: {}", productId);
+        
+        // No near-cache invalidation is published: the write-through above dropped this instance's L1 copy, and
+        // the stock shown by other instances' L1 copies is at most inventory.near-cache.expire-after-write old
+        
+        // Trigger async inventory management operations - traced automatically by OpenTelemetry
+        logger.info("Triggering async inventory operations for productId: {}", productId);
+        if (isBucketed(productId)) {
+            // The remaining count is per bucket; the rebalancer checks the threshold against the aggregate instead
+            asyncInventoryUpdateService.markAnalyticsDirty(productId);
         } else {
-            logger.warn("Failed to reserve inventory for productId: {} - database update returned 0 rows", productId);
-            return new ReservationResponse(false, "Failed to reserve inventory");
+            triggerAsyncInventoryOperations(productId, quantity, remaining.getAsInt());
+        }
+        
+        ReservationResponse response = new ReservationResponse(
+            true,
+            "Inventory reserved successfully",
+            productId,
+            quantity,
+            inventory.getUnitPrice(),
+            totalAmount
+        );
+        response.setHoldId(holdId);
+        return response;
+    }
+    
+    /**
+     * Converts a hold into a sale once its payment completed
+     */
+    public ReservationResponse commitHold(Long holdId) {
+        Optional<ReservationHoldService.Hold> hold;
+        try {
+            hold = reservationHoldService.settle(holdId, "COMMITTED", (productId, bucket, quantity) -> {
+                if (!commitStock(productId, bucket, quantity)) {
+                    // Rolls the status change back, so the hold is not marked sold without its stock
+                    throw new IllegalStateException("No " + quantity + " reserved units of productId " + productId
+                                                    + " to commit for hold " + holdId);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to commit hold {}, it stays open - {}", holdId, e.getMessage());
+            return new ReservationResponse(false, "Failed to commit hold");
+        }
+        if (hold.isEmpty()) {
+            logger.warn("No open hold {} to commit", holdId);
+            return new ReservationResponse(false, "No open hold to commit");
         }
+        Long productId = hold.get().getProductId();
+        int quantity = hold.get().getQuantity();
+        logger.info("Committed hold {} - {} units of productId: {} sold", holdId, quantity, productId);
+        
+        ReservationResponse response = new ReservationResponse(true, "Hold committed", productId, quantity, null, null);
+        response.setHoldId(holdId);
+        return response;
+    }
+    
+    /**
+     * Gives the stock of a hold back before it expires, e.g. when its payment failed
+     */
+    public ReservationResponse releaseHold(Long holdId) {
+        Optional<ReservationHoldService.Hold> hold;
+        try {
+            hold = reservationHoldService.settle(holdId, "RELEASED", this::releaseHeld);
+        } catch (RuntimeException e) {
+            logger.error("Failed to release hold {}, it stays open - {}", holdId, e.getMessage());
+            return new ReservationResponse(false, "Failed to release hold");
+        }
+        if (hold.isEmpty()) {
+            logger.warn("No open hold {} to release", holdId);
+            return new ReservationResponse(false, "No open hold to release");
+        }
+        Long productId = hold.get().getProductId();
+        int quantity = hold.get().getQuantity();
+        logger.info("Released hold {} - {} units of productId: {} available again", holdId, quantity, productId);
+        
+        ReservationResponse response = new ReservationResponse(true, "Hold released", productId, quantity, null, null);
+        response.setHoldId(holdId);
+        return response;
+    }
+    
+    @Scheduled(fixedDelayString = "${inventory.holds.wheel.tick:100ms}")
+    public void expireHolds() {
+        reservationHoldService.expireDue(this::releaseHeld);
+    }
+    
+    @Scheduled(fixedDelayString = "${inventory.holds.sweep-interval:5m}")
+    public void sweepOverdueHolds() {
+        reservationHoldService.expireOverdue(this::releaseHeld, holdSweepGrace);
+    }
+    
+    /**
+     * Compensation for a reservation whose payment did not complete
+     * Moves the quantity from reserved back to available in one conditional update. Prefer releasing the
+     * hold instead: a hold released this way stays open and gives its stock back again when it expires.
+     */
+    public ReservationResponse releaseInventory(ReservationRequest request) {
+        Long productId = request.getProductId();
+        Integer quantity = request.getQuantity();
+        
+        logger.info("Releasing {} reserved units for productId: {}", quantity, productId);
+        if (!releaseStock(productId, null, quantity)) {
+            logger.warn("Nothing to release for productId: {} - quantity: {} exceeds reserved stock or product missing",
+                       productId, quantity);
+            return new ReservationResponse(false, "No matching reservation to release");
+        }
+        
+        return new ReservationResponse(true, "Inventory released successfully", productId, quantity, null, null);
+    }
+    
+    /**
+     * Hot products reserve against their Redis counter, everything else that is not bucketed against the
+     * inventory row, optionally combined with concurrent reservations of the same product
+     */
+    private OptionalInt reserveStock(Long productId, Integer quantity) {
+        if (hotSkuReservationService.isHot(productId)) {
+            return hotSkuReservationService.reserve(productId, quantity);
+        }
+        if (reservationCombiner.isEnabled()) {
+            return reservationCombiner.reserve(productId, quantity);
+        }
+        Optional<StockLevel> stock = inventoryRepository.reserveAndGetStock(productId, quantity);
+        stock.ifPresent(level -> {
+            stockMirror.update(productId, level);
+            productSnapshotCache.applyStockChange(productId, level, quantity);
+        });
+        return stock.isPresent() ? OptionalInt.of(stock.get().getAvailable()) : OptionalInt.empty();
+    }
+    
+    // Stock of settled or expired holds, one call per product, bucket and batch, inside the hold transition;
+    // throwing rolls the transition back and leaves the holds open
+    private void releaseHeld(Long productId, Integer bucket, int quantity) {
+        if (!releaseStock(productId, bucket, quantity)) {
+            throw new IllegalStateException("No " + quantity + " reserved units of productId " + productId + " to release");
+        }
+    }
+    
+    private boolean commitStock(Long productId, Integer bucket, Integer quantity) {
+        if (isBucketed(productId)) {
+            return stockBucketService.commit(productId, bucket, quantity);
+        }
+        Optional<StockLevel> stock = inventoryRepository.commitAndGetStock(productId, quantity);
+        stock.ifPresent(level -> afterCommit(() -> {
+            if (isMirrored(productId)) {
+                stockMirror.update(productId, level);
+            }
+            productSnapshotCache.applyStockChange(productId, level, -quantity);
+        }));
+        return stock.isPresent();
+    }
+    
+    private boolean releaseStock(Long productId, Integer bucket, Integer quantity) {
+        if (hotSkuReservationService.isHot(productId)) {
+            // Redis does not roll back with a hold transition, so the counter is credited once it has committed
+            boolean[] released = {true};
+            afterCommit(() -> {
+                released[0] = hotSkuReservationService.release(productId, quantity);
+                if (!released[0]) {
+                    logger.error("Could not credit {} released units back to hot productId: {}", quantity, productId);
+                }
+            });
+            return released[0];
+        }
+        if (isBucketed(productId)) {
+            return stockBucketService.release(productId, bucket, quantity);
+        }
+        Optional<StockLevel> stock = inventoryRepository.releaseAndGetStock(productId, quantity);
+        stock.ifPresent(level -> afterCommit(() -> {
+            stockMirror.update(productId, level);
+            productSnapshotCache.applyStockChange(productId, level, -quantity);
+        }));
+        return stock.isPresent();
+    }
+    
+    /**
+     * Defers a Redis write-through until the hold transition commits, so a rolled-back level is never
+     * mirrored; runs it right away outside a transaction
+     */
+    private static void afterCommit(Runnable write) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                write.run();
+            }
+        });
+    }
+    
+    // Hot and bucketed products keep their stock outside the inventory row
+    private boolean isMirrored(Long productId) {
+        return stockMirror.isEnabled()
+            && !hotSkuReservationService.isHot(productId)
+            && !isBucketed(productId);
+    }
+    
+    // Hot takes precedence on every path, should a product ever be configured in both modes
+    private boolean isBucketed(Long productId) {
+        return !hotSkuReservationService.isHot(productId) && stockBucketService.isBucketed(productId);
+    }
+    
+    public List<CatalogEntry> getCatalog() {
+        List<CatalogEntry> catalog = inventoryRepository.findCatalog();
+        logger.debug("Serving catalog with {} products", catalog.size());
+        return catalog;
+    }
+    
+    /**
+     * Changes the unit price and announces it on the price channel
+     * The message is a plain JSON string so subscribers do not need this service's classes
+     */
+    public CatalogEntry updatePrice(Long productId, BigDecimal unitPrice) {
+        if (inventoryRepository.updateUnitPrice(productId, unitPrice) == 0) {
+            logger.warn("Price update for unknown productId: {}", productId);
+            return null;
+        }
+        Inventory inventory = inventoryRepository.findByProductId(productId).orElseThrow();
+        logger.info("Unit price for productId: {} changed to {}", productId, unitPrice);
+        
+        redisTemplate.delete("inventory:product:" + productId);
+        inventoryCache.evictLocal(productId);
+        inventoryCache.publishInvalidation(productId);
+        
+        CatalogEntry entry = new CatalogEntry(productId, inventory.getProductName(), unitPrice);
+        try {
+            redisTemplate.convertAndSend(priceChannel, objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to publish price change for productId: {} - {}", productId, e.getMessage());
+        }
+        return entry;
     }
     
     public Inventory getInventoryByProductId(Long productId) {
         logger.debug("Retrieving inventory for productId: {}", productId);
         
-        // Check cache first
-        String cacheKey = "inventory:product:" + productId;
-        Inventory cachedInventory = (Inventory) redisTemplate.opsForValue().get(cacheKey);
+        if (!productIdFilter.mightExist(productId)) {
+            return null;
+        }
+        
+        // Check near cache, then Redis (inventory:product:{productId})
+        long stamp = inventoryCache.invalidationStamp(productId);
+        Inventory cachedInventory = inventoryCache.get(productId);
         
         if (cachedInventory != null) {
             logger.debug("Inventory found in cache for productId: {}", productId);
@@ -126,9 +429,15 @@ public class InventoryService {
         logger.debug("Inventory not in cache, fetching from database for productId: {}", productId);
         Optional<Inventory> inventory = inventoryRepository.findByProductId(productId);
         if (inventory.isPresent()) {
-            // Cache the result for 10 minutes
-            redisTemplate.opsForValue().set(cacheKey, inventory.get(), Duration.ofMinutes(10));
-            logger.debug("Cached inventory data for productId: {} for 10 minutes", productId);
+            if (isBucketed(productId)) {
+                // Bucketed stock lives outside the product row; the rebalancer keeps this aggregate fresh
+                stockBucketService.aggregate(inventory.get());
+            }
+            // Stock changes keep the cached snapshot current, so it is not refreshed by expiry
+            productSnapshotCache.populate(inventory.get());
+            inventoryCache.putLocal(productId, inventory.get(), stamp);
+            logger.debug("Cached inventory data for productId: {} at stock version {}",
+                        productId, inventory.get().getStockVersion());
             return inventory.get();
         }
         
@@ -140,24 +449,16 @@ public class InventoryService {
      * Trigger async inventory management operations
      * OpenTelemetry will automatically trace these async operations
      */
-    private void triggerAsyncInventoryOperations(Long productId, Integer reservedQuantity) {
-        // Low stock threshold check - fire and forget
-        asyncInventoryUpdateService.scheduleRestockNotification(productId, 10);
-        
-        // Analytics update - with result handling
-        asyncInventoryUpdateService.updateInventoryAnalytics(productId)
-            .thenAccept(result -> {
-                logger.info("📊 " + result);
-            })
-            .exceptionally(throwable -> {
-                logger.error("❌ Analytics update failed for product: " + productId + 
-                                 " - " + throwable.getMessage());
-                return null;
-            });
-        
-        // Supplier notification for low stock (fire and forget)
-        if (reservedQuantity > 5) { // If large quantity reserved, might need supplier notification
+    private void triggerAsyncInventoryOperations(Long productId, Integer reservedQuantity, int remaining) {
+        // Low stock notifications only for the reservation that crossed the threshold - no extra read
+        if (lowStockDetector.crossedBelow(productId, reservedQuantity, remaining)) {
+            int threshold = lowStockDetector.thresholdFor(productId);
+            logger.info("Stock of productId: {} fell below {} (remaining: {})", productId, threshold, remaining);
+            asyncInventoryUpdateService.scheduleRestockNotification(productId, remaining, threshold);
             asyncInventoryUpdateService.notifySupplierLowStock(productId, "supplier@example.com");
         }
+        
+        // Analytics update - coalesced per product and recomputed once per window
+        asyncInventoryUpdateService.markAnalyticsDirty(productId);
     }
 }
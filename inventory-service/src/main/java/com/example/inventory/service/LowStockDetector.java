@@ -0,0 +1,54 @@
+package com.example.inventory.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Edge-triggered low-stock check on the counts a reservation already has
+ * Reservations of one product are serialized by their conditional UPDATE (or script), so exactly one of
+ * them takes the stock from at-or-above the threshold to below it. Only that one reports the crossing;
+ * stock coming back through releases arms the next crossing.
+ */
+@Component
+public class LowStockDetector {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LowStockDetector.class);
+    
+    private final int defaultThreshold;
+    private final Map<Long, Integer> thresholds = new HashMap<>();
+    
+    /**
+     * @param thresholds per-product overrides as productId:threshold pairs, e.g. "1:5,4:20"
+     */
+    public LowStockDetector(@Value("${inventory.low-stock.default-threshold:10}") int defaultThreshold,
+                            @Value("${inventory.low-stock.thresholds:}") String thresholds) {
+        this.defaultThreshold = defaultThreshold;
+        for (String pair : StringUtils.commaDelimitedListToStringArray(thresholds)) {
+            String[] parts = pair.trim().split(":");
+            if (parts.length != 2) {
+                logger.warn("Ignoring malformed low-stock threshold '{}'", pair);
+                continue;
+            }
+            this.thresholds.put(Long.valueOf(parts[0].trim()), Integer.valueOf(parts[1].trim()));
+        }
+    }
+    
+    public int thresholdFor(Long productId) {
+        return thresholds.getOrDefault(productId, defaultThreshold);
+    }
+    
+    /**
+     * @param remaining stock left right after a reservation of quantity
+     * @return true only for the reservation that took the stock below the product's threshold
+     */
+    public boolean crossedBelow(Long productId, int quantity, int remaining) {
+        int threshold = thresholdFor(productId);
+        return remaining < threshold && remaining + quantity >= threshold;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.inventory.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.inventory.cache.LongBloomFilter;
+import com.example.inventory.repository.InventoryRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Per-instance Bloom filter of existing product IDs
+ * Built from a streaming scan of the inventory table at startup and rebuilt periodically; products inserted
+ * in between are added through the entity listener and the product-added channel. Until the first build
+ * completes every ID passes, so the filter never rejects a product that exists.
+ */
+@Service
+public class ProductIdFilter implements MessageListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductIdFilter.class);
+    
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Value("${inventory.product-filter.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${inventory.product-filter.expected-products:100000}")
+    private long expectedProducts;
+    
+    @Value("${inventory.product-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+    
+    @Value("${inventory.product-filter.channel:inventory:product-added}")
+    private String productAddedChannel;
+    
+    private final Counter rejections;
+    private final TransactionTemplate readOnlyTransaction;
+    
+    private volatile LongBloomFilter filter;
+    // Filter being rebuilt; concurrent adds go to both so none is lost in the swap
+    private volatile LongBloomFilter building;
+    
+    public ProductIdFilter(MeterRegistry meterRegistry, PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.rejections = Counter.builder("inventory.product.filter.rejections")
+            .description("Lookups of unknown product IDs answered without I/O")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * @return false only for product IDs that certainly do not exist
+     */
+    public boolean mightExist(Long productId) {
+        LongBloomFilter current = filter;
+        if (current == null || productId == null || current.mightContain(productId)) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+    
+    public void add(Long productId) {
+        LongBloomFilter current = filter;
+        if (current != null) {
+            current.put(productId);
+        }
+        LongBloomFilter next = building;
+        if (next != null) {
+            next.put(productId);
+        }
+    }
+    
+    /**
+     * Adds a newly inserted product here and on every other instance, and drops its negative cache entry
+     */
+    public void announce(Long productId) {
+        add(productId);
+        redisTemplate.delete("inventory:check:" + productId);
+        redisTemplate.convertAndSend(productAddedChannel, productId.toString());
+    }
+    
+    public String getProductAddedChannel() {
+        return productAddedChannel;
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            add(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "")));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed product-added message on {}", productAddedChannel);
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+    }
+    
+    @Scheduled(initialDelayString = "${inventory.product-filter.rebuild-interval:15m}",
+               fixedDelayString = "${inventory.product-filter.rebuild-interval:15m}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        LongBloomFilter next = new LongBloomFilter(expectedProducts, falsePositiveRate);
+        building = next;
+        try {
+            // The stream needs an open transaction; rows are fed to the filter one at a time
+            long count = readOnlyTransaction.execute(status -> {
+                long scanned = 0;
+                try (Stream<Long> productIds = inventoryRepository.streamAllProductIds()) {
+                    for (Iterator<Long> it = productIds.iterator(); it.hasNext(); scanned++) {
+                        next.put(it.next());
+                    }
+                }
+                return scanned;
+            });
+            filter = next;
+            logger.info("Product ID filter built from {} products ({} bits)", count, next.bitSize());
+        } catch (RuntimeException e) {
+            logger.error("Product ID filter rebuild failed, keeping the previous one - {}", e.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+}
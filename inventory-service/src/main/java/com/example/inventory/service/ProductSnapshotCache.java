@@ -0,0 +1,100 @@
+package com.example.inventory.service;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import com.example.inventory.cache.TwoTierCache;
+import com.example.inventory.dto.StockLevel;
+import com.example.inventory.entity.Inventory;
+
+/**
+ * Write path of the inventory:product:{productId} snapshots read through the inventory TwoTierCache
+ * Stock changes are written through in place when the snapshot is exactly one stock version behind, and
+ * evict it otherwise. Snapshots loaded from MySQL are only cached when no newer version is known from the
+ * stock mirror or the snapshot itself, so a slow reader cannot put an older level back after a change.
+ * Kept correct by writes rather than by expiry, the TTL can be long. A stock change also drops this
+ * instance's L1 copy, so the next lookup here reads the snapshot just written.
+ */
+@Service
+public class ProductSnapshotCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductSnapshotCache.class);
+    
+    private static final String KEY_PREFIX = "inventory:product:";
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private TwoTierCache<Inventory> inventoryCache;
+    
+    @Value("${inventory.product-cache.ttl:6h}")
+    private Duration ttl;
+    
+    private final DefaultRedisScript<Long> populateScript = script("scripts/product-cache-populate.lua");
+    private final DefaultRedisScript<Long> applyScript = script("scripts/product-cache-apply.lua");
+    
+    /**
+     * Caches a snapshot read from MySQL, fenced by its stock version
+     */
+    public void populate(Inventory inventory) {
+        Long productId = inventory.getProductId();
+        try {
+            Long cached = redisTemplate.execute(populateScript,
+                List.of(KEY_PREFIX + productId, "inventory:stock:" + productId),
+                inventory, inventory.getStockVersion(), ttl.toSeconds());
+            if (cached != null && cached == 0) {
+                logger.debug("Skipped caching stale snapshot of productId: {} at stock version {}",
+                            productId, inventory.getStockVersion());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Caching snapshot of productId: {} failed - {}", productId, e.getMessage());
+        }
+    }
+    
+    /**
+     * Caches a snapshot unconditionally, for views whose stock is not versioned by the row (stock buckets)
+     */
+    public void replace(Inventory inventory) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + inventory.getProductId(), inventory, ttl);
+    }
+    
+    /**
+     * Writes the level produced by a reservation or release through to the cached snapshot
+     * Call after the stock mirror has been updated, which is what fences concurrent populate calls.
+     *
+     * @param reservedDelta change of the reserved quantity, negative for a release
+     */
+    public void applyStockChange(Long productId, StockLevel level, int reservedDelta) {
+        try {
+            Long result = redisTemplate.execute(applyScript, List.of(KEY_PREFIX + productId),
+                level.getVersion(), level.getAvailable(), reservedDelta);
+            if (result != null && result < 0) {
+                logger.debug("Evicted snapshot of productId: {} at stock version {}", productId, level.getVersion());
+            }
+        } catch (RuntimeException e) {
+            // Leaving an outdated snapshot behind is not safe with a long TTL
+            logger.warn("Write-through to snapshot of productId: {} failed, evicting - {}", productId, e.getMessage());
+            redisTemplate.delete(KEY_PREFIX + productId);
+        } finally {
+            // After the Redis write, so a lookup that read the old snapshot cannot put it back into L1
+            inventoryCache.evictLocal(productId);
+        }
+    }
+    
+    private static DefaultRedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
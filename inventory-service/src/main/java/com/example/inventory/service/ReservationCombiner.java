@@ -0,0 +1,207 @@
+package com.example.inventory.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.inventory.dto.StockLevel;
+import com.example.inventory.repository.InventoryRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Group commit for stock reservations
+ * Concurrent reservations of the same product join an open batch. The first caller leads: it waits up to the
+ * window (or until the batch is full), closes the batch and reserves the combined quantity with one conditional
+ * UPDATE, then hands every waiting caller its own outcome. The others only wait on their future.
+ */
+@Component
+public class ReservationCombiner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReservationCombiner.class);
+    
+    private static final int PARTIAL_FILL_ATTEMPTS = 3;
+    
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    
+    @Autowired
+    private StockMirror stockMirror;
+    
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    
+    @Value("${inventory.reservation.combining.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${inventory.reservation.combining.window:2ms}")
+    private Duration window;
+    
+    @Value("${inventory.reservation.combining.max-batch-size:64}")
+    private int maxBatchSize;
+    
+    private final Map<Long, Batch> openBatches = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSizes;
+    
+    public ReservationCombiner(MeterRegistry meterRegistry) {
+        this.batchSizes = DistributionSummary.builder("inventory.reservation.combined.batch.size")
+            .description("Reservations applied by one combined UPDATE")
+            .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * @return the stock remaining after this caller's reservation, or empty when it could not be filled
+     */
+    public OptionalInt reserve(Long productId, int quantity) {
+        while (true) {
+            Batch batch = openBatches.computeIfAbsent(productId, id -> new Batch());
+            Pending pending = new Pending(quantity);
+            boolean leader;
+            batch.lock.lock();
+            try {
+                if (batch.closed) {
+                    // The leader closed it between lookup and lock - join the next batch
+                    continue;
+                }
+                batch.pending.add(pending);
+                leader = batch.pending.size() == 1;
+                if (batch.pending.size() >= maxBatchSize) {
+                    batch.full.signal();
+                }
+                if (leader) {
+                    awaitWindow(batch);
+                    batch.closed = true;
+                    openBatches.remove(productId, batch);
+                }
+            } finally {
+                batch.lock.unlock();
+            }
+            
+            if (leader) {
+                // No lock needed: the batch is closed, so its list no longer changes
+                apply(productId, batch.pending);
+            }
+            return pending.result.join();
+        }
+    }
+    
+    private void awaitWindow(Batch batch) {
+        long nanos = window.toNanos();
+        try {
+            while (batch.pending.size() < maxBatchSize && nanos > 0) {
+                nanos = batch.full.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void apply(Long productId, List<Pending> batch) {
+        batchSizes.record(batch.size());
+        try {
+            Optional<StockLevel> stock = inventoryRepository.reserveAndGetStock(productId, total(batch));
+            if (stock.isPresent()) {
+                stockMirror.update(productId, stock.get());
+                productSnapshotCache.applyStockChange(productId, stock.get(), total(batch));
+                grant(batch, stock.get().getAvailable());
+                return;
+            }
+            partialFill(productId, batch);
+        } catch (RuntimeException e) {
+            logger.error("Combined reservation of {} requests for productId: {} failed - {}",
+                        batch.size(), productId, e.getMessage());
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+    
+    /**
+     * Not enough stock for the whole batch: grant requests first-fit in arrival order, so a large request
+     * that does not fit never blocks smaller ones behind it, and the outcome depends only on the arrival order
+     */
+    private void partialFill(Long productId, List<Pending> batch) {
+        for (int attempt = 0; attempt < PARTIAL_FILL_ATTEMPTS; attempt++) {
+            Optional<StockLevel> available = inventoryRepository.findStockLevel(productId);
+            if (available.isEmpty()) {
+                break;
+            }
+            stockMirror.update(productId, available.get());
+            
+            List<Pending> granted = new ArrayList<>();
+            int capacity = available.get().getAvailable();
+            for (Pending pending : batch) {
+                if (pending.quantity <= capacity) {
+                    granted.add(pending);
+                    capacity -= pending.quantity;
+                }
+            }
+            if (granted.isEmpty()) {
+                break;
+            }
+            
+            // Stock may move between the read and the update (other instances); retry with a fresh read
+            Optional<StockLevel> stock = inventoryRepository.reserveAndGetStock(productId, total(granted));
+            if (stock.isPresent()) {
+                stockMirror.update(productId, stock.get());
+                productSnapshotCache.applyStockChange(productId, stock.get(), total(granted));
+                grant(granted, stock.get().getAvailable());
+                logger.info("Partially filled batch for productId: {} - {} of {} reservations granted",
+                           productId, granted.size(), batch.size());
+                break;
+            }
+        }
+        batch.forEach(pending -> pending.result.complete(OptionalInt.empty()));
+    }
+    
+    /**
+     * Reports remaining stock per caller as if the reservations had run one after another in arrival order
+     */
+    private void grant(List<Pending> granted, int remainingAfterAll) {
+        int remaining = remainingAfterAll + total(granted);
+        for (Pending pending : granted) {
+            remaining -= pending.quantity;
+            pending.result.complete(OptionalInt.of(remaining));
+        }
+    }
+    
+    private static int total(List<Pending> batch) {
+        int total = 0;
+        for (Pending pending : batch) {
+            total += pending.quantity;
+        }
+        return total;
+    }
+    
+    private static final class Batch {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition full = lock.newCondition();
+        private final List<Pending> pending = new ArrayList<>();
+        private boolean closed;
+    }
+    
+    private static final class Pending {
+        private final int quantity;
+        private final CompletableFuture<OptionalInt> result = new CompletableFuture<>();
+        
+        Pending(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.inventory.service;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.inventory.scheduling.HierarchicalTimingWheel;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Reservation holds: reserved stock with an ID and a deadline, settled as COMMITTED, RELEASED or EXPIRED
+ * Holds are rows in inventory_hold; their deadlines sit in an in-process timing wheel, so scheduling is O(1)
+ * and expiry never scans the table. The wheel is not told about settled holds - the status-guarded UPDATE
+ * skips them. Holds created by other instances are covered by loading open holds at startup and by an
+ * infrequent sweep for overdue ones. Every transition moves the hold's stock in the same transaction as its
+ * status UPDATE, so a failure leaves the hold HELD with its stock still reserved, to be settled again.
+ */
+@Service
+public class ReservationHoldService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReservationHoldService.class);
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${inventory.holds.ttl:15m}")
+    private Duration ttl;
+    
+    @Value("${inventory.holds.release-batch-size:500}")
+    private int releaseBatchSize;
+    
+    private final HierarchicalTimingWheel wheel;
+    
+    public ReservationHoldService(MeterRegistry meterRegistry,
+                                  @Value("${inventory.holds.wheel.tick:100ms}") Duration tick,
+                                  @Value("${inventory.holds.wheel.size:256}") int wheelSize,
+                                  @Value("${inventory.holds.wheel.levels:4}") int levels) {
+        this.wheel = new HierarchicalTimingWheel(tick.toMillis(), wheelSize, levels, System.currentTimeMillis());
+        Gauge.builder("inventory.holds.scheduled", wheel, HierarchicalTimingWheel::size)
+            .description("Hold deadlines waiting in the timing wheel")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Records a hold for stock that was just reserved and schedules its expiry
+     *
+     * @param buckets units per stock bucket they came from, null when the product is not bucketed
+     */
+    public long create(Long productId, int quantity, Map<Integer, Integer> buckets) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO inventory_hold (product_id, quantity, buckets, status, expires_at) VALUES (?, ?, ?, 'HELD', ?)",
+                Statement.RETURN_GENERATED_KEYS);
+            statement.setLong(1, productId);
+            statement.setInt(2, quantity);
+            if (buckets != null) {
+                statement.setString(3, formatBuckets(buckets));
+            } else {
+                statement.setNull(3, Types.VARCHAR);
+            }
+            statement.setTimestamp(4, new Timestamp(expiresAt));
+            return statement;
+        }, keyHolder);
+        long holdId = keyHolder.getKey().longValue();
+        wheel.schedule(holdId, expiresAt);
+        return holdId;
+    }
+    
+    /**
+     * Moves an open hold to the given status and its stock with the mover, in one transaction
+     *
+     * @return the hold, or empty when it does not exist or was already settled
+     */
+    public Optional<Hold> settle(long holdId, String status, HeldStockMover mover) {
+        return transactionTemplate.execute(tx -> {
+            List<Hold> holds = jdbcTemplate.query(
+                "SELECT id, product_id, quantity, buckets FROM inventory_hold WHERE id = ? AND status = 'HELD' FOR UPDATE",
+                (resultSet, rowNum) -> new Hold(resultSet.getLong(1), resultSet.getLong(2), resultSet.getInt(3),
+                                                parseBuckets(resultSet.getString(4))),
+                holdId);
+            if (holds.isEmpty()) {
+                return Optional.<Hold>empty();
+            }
+            jdbcTemplate.update("UPDATE inventory_hold SET status = ? WHERE id = ?", status, holdId);
+            Hold hold = holds.get(0);
+            if (hold.getBuckets() == null) {
+                mover.move(hold.getProductId(), null, hold.getQuantity());
+            } else {
+                hold.getBuckets().forEach((bucket, units) -> mover.move(hold.getProductId(), bucket, units));
+            }
+            return Optional.of(hold);
+        });
+    }
+    
+    /**
+     * Expires the holds whose deadline passed and hands the released quantity per product to the releaser
+     * Each batch is one status UPDATE, and the releaser is called once per product and bucket rather than
+     * once per hold, inside the batch's transaction.
+     */
+    public void expireDue(HeldStockMover releaser) {
+        long[] due = wheel.advance(System.currentTimeMillis());
+        for (int from = 0; from < due.length; from += releaseBatchSize) {
+            long[] batch = Arrays.copyOfRange(due, from, Math.min(due.length, from + releaseBatchSize));
+            try {
+                expire(batch, releaser);
+            } catch (RuntimeException e) {
+                // Left HELD in the table; the overdue sweep picks them up again
+                logger.error("Expiring {} holds failed - {}", batch.length, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Safety net for holds this instance has no deadline for, e.g. created by an instance that went away
+     */
+    public void expireOverdue(HeldStockMover releaser, Duration grace) {
+        List<Long> overdue = jdbcTemplate.queryForList(
+            "SELECT id FROM inventory_hold WHERE status = 'HELD' AND expires_at < ? LIMIT ?",
+            Long.class, new Timestamp(System.currentTimeMillis() - grace.toMillis()), releaseBatchSize);
+        if (!overdue.isEmpty()) {
+            logger.info("Expiring {} overdue holds found by the sweep", overdue.size());
+            expire(overdue.stream().mapToLong(Long::longValue).toArray(), releaser);
+        }
+    }
+    
+    /**
+     * Puts the deadlines of every open hold back into the wheel after a restart
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOpenHolds() {
+        long[] loaded = {0};
+        jdbcTemplate.query("SELECT id, expires_at FROM inventory_hold WHERE status = 'HELD'", resultSet -> {
+            wheel.schedule(resultSet.getLong(1), resultSet.getTimestamp(2).getTime());
+            loaded[0]++;
+        });
+        logger.info("Scheduled expiry of {} open reservation holds", loaded[0]);
+    }
+    
+    private void expire(long[] holdIds, HeldStockMover releaser) {
+        List<Long> ids = new ArrayList<>(holdIds.length);
+        for (long holdId : holdIds) {
+            ids.add(holdId);
+        }
+        MapSqlParameterSource parameters = new MapSqlParameterSource("ids", ids);
+        transactionTemplate.executeWithoutResult(tx -> {
+            // Released quantity per product, then per bucket (null for products that are not bucketed)
+            Map<Long, Map<Integer, Integer>> released = new LinkedHashMap<>();
+            namedParameterJdbcTemplate.query(
+                "SELECT product_id, quantity, buckets FROM inventory_hold WHERE id IN (:ids) AND status = 'HELD' FOR UPDATE",
+                parameters,
+                resultSet -> {
+                    Map<Integer, Integer> perBucket =
+                        released.computeIfAbsent(resultSet.getLong(1), productId -> new HashMap<>());
+                    Map<Integer, Integer> buckets = parseBuckets(resultSet.getString(3));
+                    if (buckets == null) {
+                        perBucket.merge(null, resultSet.getInt(2), Integer::sum);
+                    } else {
+                        buckets.forEach((bucket, units) -> perBucket.merge(bucket, units, Integer::sum));
+                    }
+                });
+            if (released.isEmpty()) {
+                return;
+            }
+            int expired = namedParameterJdbcTemplate.update(
+                "UPDATE inventory_hold SET status = 'EXPIRED' WHERE id IN (:ids) AND status = 'HELD'", parameters);
+            released.forEach((productId, buckets) ->
+                buckets.forEach((bucket, quantity) -> releaser.move(productId, bucket, quantity)));
+            logger.info("Expired {} reservation holds across {} products", expired, released.size());
+        });
+    }
+    
+    // Stored in inventory_hold.buckets as bucket:units pairs, e.g. "3:5,6:2"
+    private static String formatBuckets(Map<Integer, Integer> buckets) {
+        return buckets.entrySet().stream()
+            .map(entry -> entry.getKey() + ":" + entry.getValue())
+            .collect(Collectors.joining(","));
+    }
+    
+    private static Map<Integer, Integer> parseBuckets(String buckets) {
+        if (buckets == null || buckets.isEmpty()) {
+            return null;
+        }
+        Map<Integer, Integer> parsed = new LinkedHashMap<>();
+        for (String pair : buckets.split(",")) {
+            String[] parts = pair.split(":");
+            parsed.put(Integer.valueOf(parts[0]), Integer.valueOf(parts[1]));
+        }
+        return parsed;
+    }
+    
+    /**
+     * Commits or gives back the stock of settled holds; runs inside the transition's transaction and makes
+     * it roll back by throwing
+     */
+    @FunctionalInterface
+    public interface HeldStockMover {
+        void move(Long productId, Integer bucket, int quantity);
+    }
+    
+    /**
+     * A hold as seen by the status transition that settled it
+     */
+    public static final class Hold {
+        
+        private final long id;
+        private final long productId;
+        private final int quantity;
+        private final Map<Integer, Integer> buckets;
+        
+        Hold(long id, long productId, int quantity, Map<Integer, Integer> buckets) {
+            this.id = id;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.buckets = buckets;
+        }
+        
+        public long getId() { return id; }
+        public long getProductId() { return productId; }
+        public int getQuantity() { return quantity; }
+        public Map<Integer, Integer> getBuckets() { return buckets; }
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.inventory.service;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.inventory.cache.TwoTierCache;
+import com.example.inventory.entity.Inventory;
+import com.example.inventory.repository.InventoryRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Sharded stock for products whose single inventory row is a contention ceiling
+ * The product's available quantity is split across inventory_bucket rows; a reservation starts at a bucket
+ * derived from the calling thread and this instance and moves on to the next bucket when one runs dry; one
+ * that no single bucket can serve is split across buckets in a transaction that locks them all. The rebalancer
+ * periodically evens the buckets out, refreshes the cached aggregate and checks it against the low-stock threshold.
+ */
+@Service
+public class StockBucketService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StockBucketService.class);
+    
+    private static final String RESERVE_SQL =
+        "UPDATE inventory_bucket " +
+        "SET quantity_available = LAST_INSERT_ID(quantity_available - ?), reserved_quantity = reserved_quantity + ? " +
+        "WHERE product_id = ? AND bucket = ? AND quantity_available >= ?";
+    
+    // For a share of a split reservation, with the buckets already locked
+    private static final String RESERVE_LOCKED_SQL =
+        "UPDATE inventory_bucket " +
+        "SET quantity_available = quantity_available - ?, reserved_quantity = reserved_quantity + ? " +
+        "WHERE product_id = ? AND bucket = ?";
+    
+    private static final String RELEASE_SQL =
+        "UPDATE inventory_bucket " +
+        "SET quantity_available = quantity_available + ?, reserved_quantity = reserved_quantity - ? " +
+        "WHERE product_id = ? AND bucket = ? AND reserved_quantity >= ?";
+    
+    private static final String COMMIT_SQL =
+        "UPDATE inventory_bucket SET reserved_quantity = reserved_quantity - ? " +
+        "WHERE product_id = ? AND bucket = ? AND reserved_quantity >= ?";
+    
+    // For releases and holds that do not know their bucket: the one with the most reserved stock
+    private static final String RELEASE_ANY_BUCKET_SQL =
+        "UPDATE inventory_bucket " +
+        "SET quantity_available = quantity_available + ?, reserved_quantity = reserved_quantity - ? " +
+        "WHERE product_id = ? AND reserved_quantity >= ? ORDER BY reserved_quantity DESC LIMIT 1";
+    
+    private static final String COMMIT_ANY_BUCKET_SQL =
+        "UPDATE inventory_bucket SET reserved_quantity = reserved_quantity - ? " +
+        "WHERE product_id = ? AND reserved_quantity >= ? ORDER BY reserved_quantity DESC LIMIT 1";
+    
+    // Different instances start their threads at different buckets
+    private static final int INSTANCE_SEED = (int) (System.nanoTime() ^ ProcessHandle.current().pid());
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    
+    @Autowired
+    private TwoTierCache<Inventory> inventoryCache;
+    
+    @Autowired
+    private HotSkuReservationService hotSkuReservationService;
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private LowStockDetector lowStockDetector;
+    
+    @Autowired
+    private AsyncInventoryUpdateService asyncInventoryUpdateService;
+    
+    @Value("${inventory.buckets.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${inventory.buckets.product-ids:}")
+    private Set<Long> bucketedProductIds;
+    
+    @Value("${inventory.buckets.count:8}")
+    private int bucketCount;
+    
+    public boolean isBucketed(Long productId) {
+        return enabled && bucketedProductIds.contains(productId);
+    }
+    
+    /**
+     * Refuses to start with a product that is both hot and bucketed
+     * Its stock would be split between the Redis counter and the buckets, depending on which mode a path checked.
+     */
+    @PostConstruct
+    public void rejectHotProducts() {
+        Set<Long> both = bucketedProductIds.stream()
+            .filter(productId -> isBucketed(productId) && hotSkuReservationService.isHot(productId))
+            .collect(Collectors.toSet());
+        if (!both.isEmpty()) {
+            throw new IllegalStateException("Products configured as both hot SKUs and bucketed: " + both);
+        }
+    }
+    
+    /**
+     * Reserves from a single bucket when one has enough stock, otherwise splits the request across buckets
+     *
+     * @return the units taken per bucket and the stock left in the buckets drawn from, or empty when all
+     *         buckets together have too little
+     */
+    public Optional<BucketReservation> reserve(Long productId, int quantity) {
+        int start = Math.floorMod(System.identityHashCode(Thread.currentThread()) * 31 + INSTANCE_SEED, bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            int bucket = (start + i) % bucketCount;
+            OptionalInt remaining = reserveFromBucket(productId, bucket, quantity);
+            if (remaining.isPresent()) {
+                return Optional.of(new BucketReservation(Map.of(bucket, quantity), remaining.getAsInt()));
+            }
+        }
+        return reserveAcrossBuckets(productId, quantity);
+    }
+    
+    /**
+     * Gives reserved units back to the bucket they were reserved from, or to the bucket with the most
+     * reserved stock when that is not known
+     */
+    public boolean release(Long productId, Integer bucket, int quantity) {
+        if (bucket == null) {
+            return jdbcTemplate.update(RELEASE_ANY_BUCKET_SQL, quantity, quantity, productId, quantity) > 0;
+        }
+        return jdbcTemplate.update(RELEASE_SQL, quantity, quantity, productId, bucket, quantity) > 0;
+    }
+    
+    public boolean commit(Long productId, Integer bucket, int quantity) {
+        if (bucket == null) {
+            return jdbcTemplate.update(COMMIT_ANY_BUCKET_SQL, quantity, productId, quantity) > 0;
+        }
+        return jdbcTemplate.update(COMMIT_SQL, quantity, productId, bucket, quantity) > 0;
+    }
+    
+    /**
+     * Adds the bucket totals to the product row, for the aggregated view that is then cached
+     */
+    public void aggregate(Inventory inventory) {
+        jdbcTemplate.query(
+            "SELECT COALESCE(SUM(quantity_available), 0), COALESCE(SUM(reserved_quantity), 0) " +
+            "FROM inventory_bucket WHERE product_id = ?",
+            resultSet -> {
+                inventory.setQuantityAvailable(inventory.getQuantityAvailable() + resultSet.getInt(1));
+                inventory.setReservedQuantity(inventory.getReservedQuantity() + resultSet.getInt(2));
+            },
+            inventory.getProductId());
+    }
+    
+    /**
+     * Moves the available stock of each bucketed product into its buckets, once
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeBuckets() {
+        if (!enabled) {
+            return;
+        }
+        for (Long productId : bucketedProductIds) {
+            transactionTemplate.executeWithoutResult(status -> {
+                // Row lock on the product serializes instances initializing at the same time
+                List<Integer> available = jdbcTemplate.queryForList(
+                    "SELECT quantity_available FROM inventory WHERE product_id = ? FOR UPDATE", Integer.class, productId);
+                Integer buckets = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM inventory_bucket WHERE product_id = ?", Integer.class, productId);
+                if (available.isEmpty() || buckets == null || buckets > 0) {
+                    return;
+                }
+                
+                int[] split = split(available.get(0));
+                List<Object[]> rows = new ArrayList<>(bucketCount);
+                for (int bucket = 0; bucket < bucketCount; bucket++) {
+                    rows.add(new Object[] {productId, bucket, split[bucket]});
+                }
+                jdbcTemplate.batchUpdate(
+                    "INSERT INTO inventory_bucket (product_id, bucket, quantity_available, reserved_quantity) VALUES (?, ?, ?, 0)",
+                    rows);
+                jdbcTemplate.update("UPDATE inventory SET quantity_available = 0 WHERE product_id = ?", productId);
+                logger.info("Split {} units of productId: {} across {} buckets", available.get(0), productId, bucketCount);
+            });
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${inventory.buckets.rebalance-interval:10s}")
+    public void rebalance() {
+        if (!enabled) {
+            return;
+        }
+        for (Long productId : bucketedProductIds) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> rebalance(productId));
+                refreshCachedView(productId);
+            } catch (RuntimeException e) {
+                logger.warn("Rebalancing buckets of productId: {} failed - {}", productId, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Evens out the buckets once the emptiest one holds less than half of its fair share
+     */
+    private void rebalance(Long productId) {
+        List<int[]> buckets = jdbcTemplate.query(
+            "SELECT bucket, quantity_available FROM inventory_bucket WHERE product_id = ? ORDER BY bucket FOR UPDATE",
+            (resultSet, rowNum) -> new int[] {resultSet.getInt(1), resultSet.getInt(2)},
+            productId);
+        if (buckets.size() < 2) {
+            return;
+        }
+        
+        int total = 0;
+        int lowest = Integer.MAX_VALUE;
+        for (int[] bucket : buckets) {
+            total += bucket[1];
+            lowest = Math.min(lowest, bucket[1]);
+        }
+        int fairShare = total / buckets.size();
+        if (fairShare == 0 || lowest * 2 >= fairShare) {
+            return;
+        }
+        
+        int[] split = split(total, buckets.size());
+        List<Object[]> updates = new ArrayList<>(buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            updates.add(new Object[] {split[i], productId, buckets.get(i)[0]});
+        }
+        jdbcTemplate.batchUpdate(
+            "UPDATE inventory_bucket SET quantity_available = ? WHERE product_id = ? AND bucket = ?", updates);
+        logger.info("Rebalanced {} units of productId: {} across {} buckets", total, productId, buckets.size());
+    }
+    
+    /**
+     * Replaces the cached product view with a fresh aggregate so readers never run the SUM themselves
+     */
+    private void refreshCachedView(Long productId) {
+        Optional<Inventory> inventory = inventoryRepository.findByProductId(productId);
+        if (inventory.isEmpty()) {
+            return;
+        }
+        aggregate(inventory.get());
+        productSnapshotCache.replace(inventory.get());
+        inventoryCache.evictLocal(productId);
+        inventoryCache.publishInvalidation(productId);
+        checkLowStock(productId, inventory.get().getQuantityAvailable());
+    }
+    
+    /**
+     * Low-stock edge for bucketed products, whose reservations only see their own bucket's count
+     * A Redis marker set on the way below the threshold and cleared on the way back up lets exactly one
+     * instance's rebalancer report each crossing.
+     */
+    private void checkLowStock(Long productId, int available) {
+        int threshold = lowStockDetector.thresholdFor(productId);
+        String markerKey = "inventory:low-stock:" + productId;
+        if (available >= threshold) {
+            redisTemplate.delete(markerKey);
+            return;
+        }
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(markerKey, available))) {
+            logger.info("Stock of bucketed productId: {} fell below {} (remaining: {})", productId, threshold, available);
+            asyncInventoryUpdateService.scheduleRestockNotification(productId, available, threshold);
+            asyncInventoryUpdateService.notifySupplierLowStock(productId, "supplier@example.com");
+        }
+    }
+    
+    /**
+     * Slow path for a request larger than any one bucket: locks the product's buckets in the rebalancer's
+     * order and draws from the fullest first, so the hold touches as few buckets as possible
+     */
+    private Optional<BucketReservation> reserveAcrossBuckets(Long productId, int quantity) {
+        return transactionTemplate.execute(status -> {
+            List<int[]> buckets = jdbcTemplate.query(
+                "SELECT bucket, quantity_available FROM inventory_bucket WHERE product_id = ? ORDER BY bucket FOR UPDATE",
+                (resultSet, rowNum) -> new int[] {resultSet.getInt(1), resultSet.getInt(2)},
+                productId);
+            int total = buckets.stream().mapToInt(bucket -> bucket[1]).sum();
+            if (total < quantity) {
+                return Optional.<BucketReservation>empty();
+            }
+            
+            buckets.sort(Comparator.comparingInt((int[] bucket) -> bucket[1]).reversed());
+            Map<Integer, Integer> taken = new LinkedHashMap<>();
+            List<Object[]> updates = new ArrayList<>();
+            int left = quantity;
+            for (int[] bucket : buckets) {
+                int units = Math.min(left, bucket[1]);
+                if (units == 0) {
+                    break;
+                }
+                taken.put(bucket[0], units);
+                updates.add(new Object[] {units, units, productId, bucket[0]});
+                left -= units;
+            }
+            jdbcTemplate.batchUpdate(RESERVE_LOCKED_SQL, updates);
+            logger.debug("Split reservation of {} units of productId: {} across buckets {}", quantity, productId, taken);
+            return Optional.of(new BucketReservation(taken, total - quantity));
+        });
+    }
+    
+    private OptionalInt reserveFromBucket(Long productId, int bucket, int quantity) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int updated = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(RESERVE_SQL, Statement.RETURN_GENERATED_KEYS);
+            statement.setInt(1, quantity);
+            statement.setInt(2, quantity);
+            statement.setLong(3, productId);
+            statement.setInt(4, bucket);
+            statement.setInt(5, quantity);
+            return statement;
+        }, keyHolder);
+        if (updated == 0) {
+            return OptionalInt.empty();
+        }
+        Number remaining = keyHolder.getKeyList().isEmpty() ? null : keyHolder.getKey();
+        return OptionalInt.of(remaining != null ? remaining.intValue() : 0);
+    }
+    
+    private int[] split(int total) {
+        return split(total, bucketCount);
+    }
+    
+    private static int[] split(int total, int parts) {
+        int[] split = new int[parts];
+        for (int i = 0; i < parts; i++) {
+            split[i] = total / parts + (i < total % parts ? 1 : 0);
+        }
+        return split;
+    }
+    
+    /**
+     * Where a reservation was taken from, recorded on its hold so it is settled against the same buckets
+     */
+    public static final class BucketReservation {
+        
+        private final Map<Integer, Integer> buckets;
+        private final int remaining;
+        
+        BucketReservation(Map<Integer, Integer> buckets, int remaining) {
+            this.buckets = buckets;
+            this.remaining = remaining;
+        }
+        
+        public Map<Integer, Integer> getBuckets() { return buckets; }
+        public int getRemaining() { return remaining; }
+    }
+}
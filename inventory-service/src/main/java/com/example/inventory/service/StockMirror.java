@@ -0,0 +1,128 @@
+package com.example.inventory.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import com.example.inventory.dto.StockLevel;
+import com.example.inventory.repository.InventoryRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Redis mirror of each product's available quantity and stock version, in inventory:stock:{productId}
+ * Every reservation and release writes the level its UPDATE produced through a script that ignores
+ * older versions, so out-of-order writes from concurrent requests or instances never roll the mirror back.
+ * The availability check is then one HGET, and the inventory row is only touched when stock is there.
+ * Restocks made directly in MySQL are not written here, so a rejecting level is rechecked against the row
+ * once per recheck interval instead of being trusted until the TTL.
+ */
+@Service
+public class StockMirror {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StockMirror.class);
+    
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    
+    @Autowired
+    private InventoryRepository inventoryRepository;
+    
+    @Value("${inventory.stock-mirror.enabled:true}")
+    private boolean enabled;
+    
+    // Bounds how long a level survives a lost write-through; any later write or reload replaces it
+    @Value("${inventory.stock-mirror.ttl:1h}")
+    private Duration ttl;
+    
+    @Value("${inventory.stock-mirror.recheck-interval:1s}")
+    private Duration recheckInterval;
+    
+    private final Map<Long, Long> nextRecheckMillis = new ConcurrentHashMap<>();
+    private final DefaultRedisScript<Long> updateScript = new DefaultRedisScript<>();
+    private final Counter rejections;
+    
+    public StockMirror(MeterRegistry meterRegistry) {
+        updateScript.setLocation(new ClassPathResource("scripts/stock-mirror-update.lua"));
+        updateScript.setResultType(Long.class);
+        this.rejections = Counter.builder("inventory.stock.mirror.rejections")
+            .description("Reservations rejected from the stock mirror without touching MySQL")
+            .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * @return the mirrored available quantity, or empty when the product is not mirrored yet
+     */
+    public OptionalInt getAvailable(Long productId) {
+        Object available = stringRedisTemplate.opsForHash().get(key(productId), "available");
+        return available != null ? OptionalInt.of(Integer.parseInt((String) available)) : OptionalInt.empty();
+    }
+    
+    /**
+     * Loads the level from MySQL into the mirror
+     *
+     * @return the available quantity, or empty when the product does not exist
+     */
+    public OptionalInt refresh(Long productId) {
+        Optional<StockLevel> level = inventoryRepository.findStockLevel(productId);
+        if (level.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        update(productId, level.get());
+        return OptionalInt.of(level.get().getAvailable());
+    }
+    
+    /**
+     * Writes a level read from or produced by MySQL, unless the mirror already holds a newer version
+     * A failed write only leaves the mirror behind until the next write or the TTL
+     */
+    public void update(Long productId, StockLevel level) {
+        try {
+            stringRedisTemplate.execute(updateScript, List.of(key(productId)),
+                String.valueOf(level.getAvailable()), String.valueOf(level.getVersion()),
+                String.valueOf(ttl.toSeconds()));
+        } catch (RuntimeException e) {
+            logger.warn("Stock mirror update for productId: {} failed - {}", productId, e.getMessage());
+        }
+    }
+    
+    /**
+     * Lets a reservation the mirror would reject go on to MySQL, whose conditional UPDATE then decides and
+     * writes the current level back
+     *
+     * @return true for at most one caller per product and recheck interval
+     */
+    public boolean tryRecheck(Long productId) {
+        long now = System.currentTimeMillis();
+        Long next = nextRecheckMillis.get(productId);
+        if (next == null) {
+            return nextRecheckMillis.putIfAbsent(productId, now + recheckInterval.toMillis()) == null;
+        }
+        return next <= now && nextRecheckMillis.replace(productId, next, now + recheckInterval.toMillis());
+    }
+    
+    public void recordRejection() {
+        rejections.increment();
+    }
+    
+    private static String key(Long productId) {
+        return "inventory:stock:" + productId;
+    }
+}
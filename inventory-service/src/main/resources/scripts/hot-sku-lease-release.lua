@@ -0,0 +1,8 @@
+-- Give up the reconcile lease, but only if this instance still holds it
+-- KEYS[1] lease key
+-- ARGV[1] holder ID
+-- Returns 1 when released, 0 when the lease had expired or moved on
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,9 @@
+-- Return reserved stock of a hot product
+-- KEYS[1] available counter, KEYS[2] pending delta not yet written to MySQL
+-- ARGV[1] quantity
+-- Returns the new available count, -2 when the counter is not loaded
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return -2
+end
+redis.call('DECRBY', KEYS[2], ARGV[1])
+return redis.call('INCRBY', KEYS[1], ARGV[1])
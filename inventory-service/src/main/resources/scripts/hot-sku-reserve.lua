@@ -0,0 +1,14 @@
+-- Reserve stock of a hot product held in Redis
+-- KEYS[1] available counter, KEYS[2] pending delta not yet written to MySQL
+-- ARGV[1] quantity
+-- Returns the remaining count, -1 when stock is insufficient, -2 when the counter is not loaded
+local available = tonumber(redis.call('GET', KEYS[1]))
+if available == nil then
+    return -2
+end
+local quantity = tonumber(ARGV[1])
+if available < quantity then
+    return -1
+end
+redis.call('INCRBY', KEYS[2], quantity)
+return redis.call('DECRBY', KEYS[1], quantity)
@@ -0,0 +1,28 @@
+-- Write a stock change through to a cached product snapshot
+-- KEYS[1] product snapshot
+-- ARGV[1] new stock version, ARGV[2] new available quantity, ARGV[3] change of the reserved quantity
+-- Returns 1 when updated in place, 0 when there was nothing to update, -1 when the snapshot was evicted
+local cached = redis.call('GET', KEYS[1])
+if not cached then
+    return 0
+end
+local ok, product = pcall(cjson.decode, cached)
+if not ok then
+    redis.call('DEL', KEYS[1])
+    return -1
+end
+local current = tonumber(product['stockVersion']) or 0
+local version = tonumber(ARGV[1])
+if current >= version then
+    return 0
+end
+if current ~= version - 1 or type(product['reservedQuantity']) ~= 'number' then
+    -- An intermediate change is missing, so the reserved quantity cannot be derived: evict
+    redis.call('DEL', KEYS[1])
+    return -1
+end
+product['stockVersion'] = version
+product['quantityAvailable'] = tonumber(ARGV[2])
+product['reservedQuantity'] = product['reservedQuantity'] + tonumber(ARGV[3])
+redis.call('SET', KEYS[1], cjson.encode(product), 'KEEPTTL')
+return 1
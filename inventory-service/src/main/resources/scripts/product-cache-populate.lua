@@ -0,0 +1,18 @@
+-- Cache a product snapshot read from MySQL unless a newer stock version is already known
+-- KEYS[1] product snapshot, KEYS[2] stock mirror hash
+-- ARGV[1] serialized snapshot, ARGV[2] its stock version, ARGV[3] TTL in seconds
+-- Returns 1 when cached, 0 when the snapshot was already stale
+local version = tonumber(ARGV[2])
+local known = tonumber(redis.call('HGET', KEYS[2], 'version'))
+if known ~= nil and known > version then
+    return 0
+end
+local cached = redis.call('GET', KEYS[1])
+if cached then
+    local ok, product = pcall(cjson.decode, cached)
+    if ok and tonumber(product['stockVersion']) ~= nil and tonumber(product['stockVersion']) >= version then
+        return 0
+    end
+end
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[3])
+return 1
@@ -0,0 +1,11 @@
+-- Write a product's stock level into the mirror unless a newer one is already there
+-- KEYS[1] mirror hash
+-- ARGV[1] available, ARGV[2] stock version, ARGV[3] TTL in seconds
+-- Returns 1 when written, 0 when the mirror already holds this or a newer version
+local current = tonumber(redis.call('HGET', KEYS[1], 'version'))
+if current ~= nil and current >= tonumber(ARGV[2]) then
+    return 0
+end
+redis.call('HSET', KEYS[1], 'available', ARGV[1], 'version', ARGV[2])
+redis.call('EXPIRE', KEYS[1], ARGV[3])
+return 1
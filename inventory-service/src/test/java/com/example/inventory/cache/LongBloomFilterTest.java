@@ -0,0 +1,78 @@
+package com.example.inventory.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class LongBloomFilterTest {
+    
+    private static final int PROBES = 200_000;
+    
+    @Test
+    void neverReportsAnAddedKeyAsMissing() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long key = 1; key <= 10_000; key++) {
+            filter.put(key);
+        }
+        
+        for (long key = 1; key <= 10_000; key++) {
+            assertThat(filter.mightContain(key)).as("key %s", key).isTrue();
+        }
+    }
+    
+    @Test
+    void sizesTheBitArrayFromExpectedInsertionsAndRate() {
+        // m = -n ln p / (ln 2)^2, rounded up to whole 64-bit words
+        assertThat(new LongBloomFilter(10_000, 0.01).bitSize()).isEqualTo(95_872);
+        assertThat(new LongBloomFilter(10_000, 0.001).bitSize()).isEqualTo(143_808);
+        assertThat(new LongBloomFilter(0, 0.01).bitSize()).isEqualTo(64);
+    }
+    
+    @Test
+    void falsePositiveRateStaysNearTheTargetAtTheSizedLoad() {
+        assertThat(falsePositiveRate(10_000, 0.01, 10_000)).isLessThan(0.015);
+        assertThat(falsePositiveRate(10_000, 0.001, 10_000)).isLessThan(0.0015);
+        assertThat(falsePositiveRate(100_000, 0.01, 100_000)).isLessThan(0.015);
+    }
+    
+    @Test
+    void falsePositiveRateGrowsWhenFilledPastItsSize() {
+        double sized = falsePositiveRate(10_000, 0.01, 10_000);
+        double overfilled = falsePositiveRate(10_000, 0.01, 40_000);
+        
+        assertThat(overfilled).isGreaterThan(0.1).isGreaterThan(sized * 10);
+    }
+    
+    @Test
+    void sparseKeysSpreadAsWellAsSequentialOnes() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long i = 0; i < 10_000; i++) {
+            filter.put(i * 1_000_003L);
+        }
+        int falsePositives = 0;
+        for (long i = 0; i < PROBES; i++) {
+            if (filter.mightContain(i * 1_000_003L + 17)) {
+                falsePositives++;
+            }
+        }
+        
+        assertThat((double) falsePositives / PROBES).isLessThan(0.015);
+    }
+    
+    /**
+     * Adds keys 1..inserted (product IDs are sequential) and probes IDs above them that were never added
+     */
+    private static double falsePositiveRate(long expectedInsertions, double rate, long inserted) {
+        LongBloomFilter filter = new LongBloomFilter(expectedInsertions, rate);
+        for (long key = 1; key <= inserted; key++) {
+            filter.put(key);
+        }
+        int falsePositives = 0;
+        for (long key = inserted + 1; key <= inserted + PROBES; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+        return (double) falsePositives / PROBES;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.inventory.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class LongKeyNearCacheTest {
+    
+    // Mirrors LongKeyNearCache's 16 segments, so tests can pick keys that share one
+    private static final int SEGMENTS = 16;
+    
+    @Test
+    void returnsWhatWasPutUntilInvalidated() {
+        LongKeyNearCache<String> cache = new LongKeyNearCache<>(1024, Long.MAX_VALUE, String::length, 0);
+        cache.put(42L, "answer");
+        
+        assertThat(cache.get(42L)).isEqualTo("answer");
+        assertThat(cache.get(43L)).isNull();
+        
+        cache.invalidate(42L);
+        assertThat(cache.get(42L)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+    
+    @Test
+    void clockSweepEvictsTheEntryNotReadSinceTheLastPass() {
+        // Two entries per segment
+        LongKeyNearCache<String> cache = new LongKeyNearCache<>(2 * SEGMENTS, Long.MAX_VALUE, String::length, 0);
+        long[] keys = keysInOneSegment(3);
+        cache.put(keys[0], "read");
+        cache.put(keys[1], "unread");
+        cache.get(keys[0]);
+        
+        cache.put(keys[2], "new");
+        
+        assertThat(cache.get(keys[0])).isEqualTo("read");
+        assertThat(cache.get(keys[1])).isNull();
+        assertThat(cache.get(keys[2])).isEqualTo("new");
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+    
+    @Test
+    void clockSweepClearsReferenceBitsBeforeEvictingARecentlyReadEntry() {
+        LongKeyNearCache<String> cache = new LongKeyNearCache<>(2 * SEGMENTS, Long.MAX_VALUE, String::length, 0);
+        long[] keys = keysInOneSegment(3);
+        cache.put(keys[0], "a");
+        cache.put(keys[1], "b");
+        cache.get(keys[0]);
+        cache.get(keys[1]);
+        
+        // Every entry was read: the sweep clears both bits and then evicts one of them
+        cache.put(keys[2], "c");
+        
+        assertThat(cache.get(keys[2])).isEqualTo("c");
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+    
+    @Test
+    void staysWithinTheWeightBudget() {
+        // 10 weight units per segment
+        LongKeyNearCache<String> cache = new LongKeyNearCache<>(1024, 10L * SEGMENTS, String::length, 0);
+        long[] keys = keysInOneSegment(4);
+        cache.put(keys[0], "12345");
+        cache.put(keys[1], "12345");
+        cache.put(keys[2], "12345");
+        
+        assertThat(cache.weight()).isLessThanOrEqualTo(10);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.get(keys[2])).isEqualTo("12345");
+        
+        // Heavier than a whole segment: never cached
+        assertThat(cache.putIfNotInvalidated(keys[3], "12345678901", cache.invalidationStamp(keys[3]))).isFalse();
+        assertThat(cache.get(keys[3])).isNull();
+    }
+    
+    @Test
+    void entriesExpireAfterWrite() throws InterruptedException {
+        LongKeyNearCache<String> cache = new LongKeyNearCache<>(1024, Long.MAX_VALUE, String::length,
+                                                                TimeUnit.MILLISECONDS.toNanos(20));
+        cache.put(1L, "short-lived");
+        assertThat(cache.get(1L)).isEqualTo("short-lived");
+        
+        Thread.sleep(40);
+        
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+    
+    @Test
+    void keepsEveryOtherKeyReachableWhenRemovingFromProbeRuns() {
+        LongKeyNearCache<Long> cache = new LongKeyNearCache<>(64 * SEGMENTS, Long.MAX_VALUE, value -> 1, 0);
+        long[] keys = keysInOneSegment(60);
+        for (long key : keys) {
+            cache.put(key, key);
+        }
+        for (int i = 0; i < keys.length; i += 2) {
+            cache.invalidate(keys[i]);
+        }
+        
+        for (int i = 0; i < keys.length; i++) {
+            assertThat(cache.get(keys[i])).isEqualTo(i % 2 == 0 ? null : keys[i]);
+        }
+        assertThat(cache.size()).isEqualTo(keys.length / 2);
+    }
+    
+    @Test
+    void rejectsAPutWhoseSegmentWasInvalidatedAfterTheStamp() {
+        LongKeyNearCache<String> cache = new LongKeyNearCache<>(1024, Long.MAX_VALUE, String::length, 0);
+        long[] keys = keysInOneSegment(2);
+        
+        long stamp = cache.invalidationStamp(keys[0]);
+        cache.invalidate(keys[0]);
+        assertThat(cache.putIfNotInvalidated(keys[0], "stale", stamp)).isFalse();
+        
+        // Stamps are per segment, so invalidating a neighbour also fences the load
+        stamp = cache.invalidationStamp(keys[0]);
+        cache.invalidate(keys[1]);
+        assertThat(cache.putIfNotInvalidated(keys[0], "maybe stale", stamp)).isFalse();
+        
+        stamp = cache.invalidationStamp(keys[0]);
+        cache.invalidateAll();
+        assertThat(cache.putIfNotInvalidated(keys[0], "stale", stamp)).isFalse();
+        
+        stamp = cache.invalidationStamp(keys[0]);
+        assertThat(cache.putIfNotInvalidated(keys[0], "fresh", stamp)).isTrue();
+        assertThat(cache.get(keys[0])).isEqualTo("fresh");
+    }
+    
+    @Test
+    void evictionDoesNotFenceLoads() {
+        LongKeyNearCache<String> cache = new LongKeyNearCache<>(SEGMENTS, Long.MAX_VALUE, String::length, 0);
+        long[] keys = keysInOneSegment(2);
+        
+        long stamp = cache.invalidationStamp(keys[1]);
+        cache.put(keys[0], "a");
+        cache.put(keys[1], "b");
+        
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.putIfNotInvalidated(keys[0], "a", stamp)).isTrue();
+    }
+    
+    @Test
+    void loaderRacingInvalidationsNeverLeavesAnOutdatedValue() throws InterruptedException {
+        LongKeyNearCache<Long> cache = new LongKeyNearCache<>(1024, Long.MAX_VALUE, value -> 1, 0);
+        long key = 7L;
+        long versions = 20_000;
+        AtomicLong source = new AtomicLong();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        List<Thread> loaders = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Thread loader = new Thread(() -> {
+                awaitQuietly(start);
+                while (writing.get()) {
+                    // Read-through as the caches do it: stamp, load from the slower tier, put
+                    long stamp = cache.invalidationStamp(key);
+                    long loaded = source.get();
+                    cache.putIfNotInvalidated(key, loaded, stamp);
+                }
+            });
+            loader.start();
+            loaders.add(loader);
+        }
+        Thread writer = new Thread(() -> {
+            awaitQuietly(start);
+            for (long version = 1; version <= versions; version++) {
+                source.set(version);
+                cache.invalidate(key);
+            }
+            writing.set(false);
+        });
+        writer.start();
+        
+        start.countDown();
+        writer.join();
+        for (Thread loader : loaders) {
+            loader.join();
+        }
+        
+        Long cached = cache.get(key);
+        assertThat(cached == null || cached == versions)
+            .as("cached value %s after the last write of version %s", cached, versions)
+            .isTrue();
+    }
+    
+    private static long[] keysInOneSegment(int count) {
+        long[] keys = new long[count];
+        int found = 0;
+        int segment = segmentOf(1L);
+        for (long key = 1; found < count; key++) {
+            if (segmentOf(key) == segment) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+    
+    // Same spreading as LongKeyNearCache.hash and segmentFor
+    private static int segmentOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        int hash = (int) (h ^ (h >>> 32));
+        return (hash >>> 28) & (SEGMENTS - 1);
+    }
+    
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
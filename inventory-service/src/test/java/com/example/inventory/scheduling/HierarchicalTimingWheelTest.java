@@ -0,0 +1,124 @@
+package com.example.inventory.scheduling;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HierarchicalTimingWheelTest {
+    
+    // 1 ms ticks, 4 slots per level: level 0 spans 4 ticks, level 1 16 and level 2 64
+    private static final long TICK = 1;
+    private static final int WHEEL_SIZE = 4;
+    private static final int LEVELS = 3;
+    
+    @Test
+    void firesEachDeadlineOnItsOwnTickAcrossLevelBoundaries() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, WHEEL_SIZE, LEVELS, 0);
+        long[] deadlines = {1, 3, 4, 5, 15, 16, 17, 20, 63, 64, 65, 80};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        
+        Map<Long, Long> fired = advanceTickByTick(wheel, 0, 100);
+        
+        for (long deadline : deadlines) {
+            assertThat(fired.get(deadline)).as("deadline %s", deadline).isEqualTo(deadline);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void cascadesEntriesScheduledFromAnUnalignedStart() {
+        long start = 1_000_003;
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, WHEEL_SIZE, LEVELS, start);
+        Random random = new Random(42);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long id = 0; id < 2_000; id++) {
+            long deadline = start + 1 + random.nextInt(60);
+            deadlines.put(id, deadline);
+            wheel.schedule(id, deadline);
+        }
+        
+        Map<Long, Long> fired = advanceTickByTick(wheel, start, start + 100);
+        
+        assertThat(fired).isEqualTo(deadlines);
+    }
+    
+    @Test
+    void deadlinesBeyondTheTopLevelAreParkedAndReplaced() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, WHEEL_SIZE, LEVELS, 0);
+        long[] deadlines = {100, 200, 257, 1_000};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        
+        Map<Long, Long> fired = advanceTickByTick(wheel, 0, 1_100);
+        
+        for (long deadline : deadlines) {
+            assertThat(fired.get(deadline)).as("deadline %s", deadline).isEqualTo(deadline);
+        }
+    }
+    
+    @Test
+    void neverFiresBeforeTheDeadlineWithCoarseTicks() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(100, WHEEL_SIZE, LEVELS, 0);
+        wheel.schedule(1, 250);
+        
+        assertThat(wheel.advance(249)).isEmpty();
+        // Rounded up to the next tick: fires within one tick after the deadline
+        assertThat(wheel.advance(299)).isEmpty();
+        assertThat(wheel.advance(300)).containsExactly(1);
+    }
+    
+    @Test
+    void pastDeadlinesFireOnTheNextTick() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, WHEEL_SIZE, LEVELS, 50);
+        wheel.schedule(1, 10);
+        
+        assertThat(wheel.advance(50)).isEmpty();
+        assertThat(wheel.advance(51)).containsExactly(1);
+    }
+    
+    @Test
+    void oneLargeAdvanceReturnsEverythingDue() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, WHEEL_SIZE, LEVELS, 0);
+        for (long id = 1; id <= 500; id++) {
+            wheel.schedule(id, id);
+        }
+        
+        long[] due = wheel.advance(300);
+        
+        assertThat(due).hasSize(300);
+        assertThat(wheel.size()).isEqualTo(200);
+        assertThat(wheel.advance(500)).hasSize(200);
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void slotsGrowForManyEntriesOnOneTick() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, WHEEL_SIZE, LEVELS, 0);
+        for (long id = 0; id < 1_000; id++) {
+            wheel.schedule(id, 40);
+        }
+        
+        assertThat(wheel.advance(39)).isEmpty();
+        assertThat(wheel.advance(40)).hasSize(1_000);
+    }
+    
+    /**
+     * @return the tick each ID fired on
+     */
+    private static Map<Long, Long> advanceTickByTick(HierarchicalTimingWheel wheel, long from, long to) {
+        Map<Long, Long> fired = new HashMap<>();
+        for (long now = from + 1; now <= to; now++) {
+            for (long id : wheel.advance(now)) {
+                assertThat(fired.put(id, now)).as("id %s fired twice", id).isNull();
+            }
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.order.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded in-process cache keyed by primitive long IDs
+ * Entries live in open-addressing tables (no boxed keys, no per-entry nodes) split across lock-striped segments.
+ * When a segment exceeds its entry or weight budget, a CLOCK sweep evicts entries that were not read since the
+ * last pass. Entries also expire a fixed time after they were written, which bounds staleness when an
+ * invalidation message is missed. Each segment counts its invalidations, so a value loaded from a slower tier
+ * can be put only if no invalidation hit its segment while it was being loaded.
+ */
+public class LongKeyNearCache<V> {
+    
+    private static final int SEGMENTS = 16;
+    private static final long ANY_STAMP = -1;
+    
+    private final Segment<V>[] segments;
+    private final ToIntFunction<V> weigher;
+    private final LongAdder evictions = new LongAdder();
+    
+    /**
+     * @param maximumSize   maximum number of entries
+     * @param maximumWeight maximum total weight as computed by the weigher
+     * @param weigher       weight of a value, e.g. its approximate size in bytes
+     * @param expireAfterWriteNanos lifetime of an entry, 0 to disable
+     */
+    @SuppressWarnings("unchecked")
+    public LongKeyNearCache(int maximumSize, long maximumWeight, ToIntFunction<V> weigher, long expireAfterWriteNanos) {
+        this.weigher = weigher;
+        this.segments = (Segment<V>[]) new Segment<?>[SEGMENTS];
+        int segmentSize = Math.max(1, maximumSize / SEGMENTS);
+        long segmentWeight = Math.max(1, maximumWeight / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(segmentSize, segmentWeight, expireAfterWriteNanos, evictions);
+        }
+    }
+    
+    public V get(long key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash, System.nanoTime());
+    }
+    
+    public void put(long key, V value) {
+        int hash = hash(key);
+        segmentFor(hash).put(key, hash, value, weigher.applyAsInt(value), System.nanoTime(), ANY_STAMP);
+    }
+    
+    /**
+     * @return the stamp to pass to putIfNotInvalidated, taken before the value is loaded
+     */
+    public long invalidationStamp(long key) {
+        return segmentFor(hash(key)).invalidations;
+    }
+    
+    /**
+     * Puts a value loaded after the stamp was taken, unless the key's segment was invalidated since
+     * (the value may then predate the change that caused the invalidation)
+     *
+     * @return whether the value was cached
+     */
+    public boolean putIfNotInvalidated(long key, V value, long stamp) {
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, weigher.applyAsInt(value), System.nanoTime(), stamp);
+    }
+    
+    public void invalidate(long key) {
+        int hash = hash(key);
+        segmentFor(hash).remove(key, hash);
+    }
+    
+    public void invalidateAll() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+    
+    public long size() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+    
+    public long weight() {
+        long weight = 0;
+        for (Segment<V> segment : segments) {
+            weight += segment.totalWeight;
+        }
+        return weight;
+    }
+    
+    public long evictionCount() {
+        return evictions.sum();
+    }
+    
+    private Segment<V> segmentFor(int hash) {
+        return segments[(hash >>> 28) & (SEGMENTS - 1)];
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    private static final class Segment<V> {
+        
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int maximumSize;
+        private final long maximumWeight;
+        private final long expireAfterWriteNanos;
+        private final LongAdder evictions;
+        private final int mask;
+        
+        // Slot i is occupied when values[i] != null
+        private final long[] keys;
+        private final Object[] values;
+        private final int[] weights;
+        private final long[] writeTimes;
+        private final boolean[] referenced;
+        
+        private volatile int count;
+        private volatile long totalWeight;
+        // Bumped under the lock by remove and clear, not by eviction or expiry
+        private volatile long invalidations;
+        private int clockHand;
+        
+        Segment(int maximumSize, long maximumWeight, long expireAfterWriteNanos, LongAdder evictions) {
+            this.maximumSize = maximumSize;
+            this.maximumWeight = maximumWeight;
+            this.expireAfterWriteNanos = expireAfterWriteNanos;
+            this.evictions = evictions;
+            // Keep the load factor at or below 0.5 so probe sequences stay short
+            int capacity = Integer.highestOneBit(Math.max(2, maximumSize) * 2 - 1) << 1;
+            this.mask = capacity - 1;
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.weights = new int[capacity];
+            this.writeTimes = new long[capacity];
+            this.referenced = new boolean[capacity];
+        }
+        
+        @SuppressWarnings("unchecked")
+        V get(long key, int hash, long now) {
+            lock.lock();
+            try {
+                int slot = find(key, hash);
+                if (slot < 0) {
+                    return null;
+                }
+                if (isExpired(slot, now)) {
+                    removeAt(slot);
+                    return null;
+                }
+                referenced[slot] = true;
+                return (V) values[slot];
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        boolean put(long key, int hash, V value, int weight, long now, long stamp) {
+            if (weight > maximumWeight) {
+                return false;
+            }
+            lock.lock();
+            try {
+                if (stamp != ANY_STAMP && stamp != invalidations) {
+                    return false;
+                }
+                int slot = find(key, hash);
+                if (slot >= 0) {
+                    removeAt(slot);
+                }
+                while (count > 0 && (count >= maximumSize || totalWeight + weight > maximumWeight)) {
+                    evictOne();
+                }
+                
+                slot = hash & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = value;
+                weights[slot] = weight;
+                writeTimes[slot] = now;
+                referenced[slot] = false;
+                count++;
+                totalWeight += weight;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void remove(long key, int hash) {
+            lock.lock();
+            try {
+                invalidations++;
+                int slot = find(key, hash);
+                if (slot >= 0) {
+                    removeAt(slot);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void clear() {
+            lock.lock();
+            try {
+                invalidations++;
+                Arrays.fill(values, null);
+                count = 0;
+                totalWeight = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private int find(long key, int hash) {
+            int slot = hash & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+        
+        private boolean isExpired(int slot, long now) {
+            return expireAfterWriteNanos > 0 && now - writeTimes[slot] >= expireAfterWriteNanos;
+        }
+        
+        /**
+         * CLOCK sweep: clear the reference bit of recently read entries and evict the first one without it
+         */
+        private void evictOne() {
+            while (true) {
+                int slot = clockHand;
+                clockHand = (clockHand + 1) & mask;
+                if (values[slot] == null) {
+                    continue;
+                }
+                if (referenced[slot]) {
+                    referenced[slot] = false;
+                    continue;
+                }
+                removeAt(slot);
+                evictions.increment();
+                return;
+            }
+        }
+        
+        /**
+         * Removes a slot and shifts later entries of the same probe run back, so lookups never
+         * stop early at the hole (linear probing has no tombstones here)
+         */
+        private void removeAt(int slot) {
+            count--;
+            totalWeight -= weights[slot];
+            values[slot] = null;
+            
+            int hole = slot;
+            int next = (slot + 1) & mask;
+            while (values[next] != null) {
+                int home = hash(keys[next]) & mask;
+                // Move the entry into the hole unless its home slot lies cyclically in (hole, next]
+                boolean homeBetween = hole <= next
+                    ? (home > hole && home <= next)
+                    : (home > hole || home <= next);
+                if (!homeBetween) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    weights[hole] = weights[next];
+                    writeTimes[hole] = writeTimes[next];
+                    referenced[hole] = referenced[next];
+                    values[next] = null;
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+        }
+    }
+}
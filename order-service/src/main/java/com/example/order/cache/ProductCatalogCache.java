@@ -0,0 +1,196 @@
+package com.example.order.cache;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.order.dto.CatalogEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * In-memory copy of inventory-service's product catalog for order pricing
+ * Bulk-loaded once the application is ready, reloaded in the background before it goes stale and patched
+ * in between by price-change messages, so getUnitPrice rarely leaves the JVM. A catalog that could not be
+ * reloaded within order.catalog.ttl is dropped instead of being served. A product missing from the catalog
+ * is priced from inventory-service on its own; when that fails too the lookup throws rather than guessing.
+ */
+@Component
+public class ProductCatalogCache implements MessageListener, MeterBinder {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalogCache.class);
+    
+    private final Map<Long, CatalogEntry> entries = new ConcurrentHashMap<>();
+    private volatile long loadedAtMillis;
+    
+    // Sequence of the last price-change message per product; a snapshot requested before it must not undo it
+    private final AtomicLong updateSequence = new AtomicLong();
+    private final Map<Long, Long> patchedAt = new ConcurrentHashMap<>();
+    
+    @Autowired
+    private RestTemplate restTemplate;
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${inventory.service.url}")
+    private String inventoryServiceUrl;
+    
+    @Value("${order.catalog.price-channel:catalog:price-changed}")
+    private String priceChannel;
+    
+    @Value("${order.catalog.ttl:10m}")
+    private Duration ttl;
+    
+    /**
+     * Bound by Spring once the bean is fully constructed, so the gauges never see a partially built cache
+     */
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("catalog.products", entries, Map::size).register(meterRegistry);
+        Gauge.builder("catalog.age", this, cache -> cache.loadedAtMillis == 0
+                ? Double.NaN : (System.currentTimeMillis() - cache.loadedAtMillis) / 1000.0)
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+    
+    public BigDecimal getUnitPrice(Long productId) {
+        if (isExpired()) {
+            reloadExpired();
+        }
+        CatalogEntry entry = entries.get(productId);
+        if (entry == null || entry.getUnitPrice() == null) {
+            entry = fetchEntry(productId);
+        }
+        return entry.getUnitPrice();
+    }
+    
+    public String getPriceChannel() {
+        return priceChannel;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAtStartup() {
+        refresh();
+    }
+    
+    /**
+     * Refresh-ahead: runs well inside the TTL so lookups never find an expired catalog
+     * A failed reload keeps serving the previous snapshot until the TTL is reached, then drops it
+     */
+    @Scheduled(initialDelayString = "${order.catalog.refresh-interval:5m}", fixedDelayString = "${order.catalog.refresh-interval:5m}")
+    public synchronized void refresh() {
+        long requestedAt = updateSequence.get();
+        try {
+            CatalogEntry[] catalog = restTemplate.getForObject(inventoryServiceUrl + "/catalog", CatalogEntry[].class);
+            if (catalog == null) {
+                return;
+            }
+            Set<Long> productIds = Arrays.stream(catalog)
+                .map(CatalogEntry::getProductId)
+                .collect(Collectors.toSet());
+            // Entries patched by a message after the request went out are newer than the snapshot - keep them
+            for (CatalogEntry entry : catalog) {
+                entries.compute(entry.getProductId(),
+                    (productId, current) -> current != null && patchedSince(productId, requestedAt) ? current : entry);
+            }
+            for (Long productId : entries.keySet()) {
+                if (!productIds.contains(productId)) {
+                    entries.computeIfPresent(productId,
+                        (id, current) -> patchedSince(id, requestedAt) ? current : null);
+                }
+            }
+            patchedAt.values().removeIf(sequence -> sequence <= requestedAt);
+            loadedAtMillis = System.currentTimeMillis();
+            logger.info("Product catalog loaded with {} products", entries.size());
+        } catch (Exception e) {
+            if (isExpired()) {
+                entries.clear();
+                loadedAtMillis = 0;
+                logger.warn("Product catalog refresh failed and the catalog is past its TTL, dropped it: {}", e.getMessage());
+            } else {
+                logger.warn("Product catalog refresh failed{}: {}", loadedAtMillis == 0 ? " before the first load" : "", e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (!(payload instanceof String json)) {
+                return;
+            }
+            CatalogEntry entry = objectMapper.readValue(json, CatalogEntry.class);
+            entries.compute(entry.getProductId(), (productId, current) -> {
+                patchedAt.put(productId, updateSequence.incrementAndGet());
+                return entry;
+            });
+            logger.info("Catalog price for productId: {} updated to {}", entry.getProductId(), entry.getUnitPrice());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable price change message: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Prices one product missing from the catalog, e.g. before the first load or after a dropped catalog
+     * The entry is kept unless a price-change message or a reload got there first.
+     *
+     * @throws IllegalStateException when inventory-service has no price for the product or cannot be reached
+     */
+    private CatalogEntry fetchEntry(Long productId) {
+        CatalogEntry entry;
+        try {
+            entry = restTemplate.getForObject(inventoryServiceUrl + "/inventory/{productId}", CatalogEntry.class, productId);
+        } catch (RestClientException e) {
+            throw new IllegalStateException("No price available for productId " + productId + ": " + e.getMessage(), e);
+        }
+        if (entry == null || entry.getUnitPrice() == null) {
+            throw new IllegalStateException("No price available for productId " + productId);
+        }
+        logger.debug("Priced productId: {} outside the catalog at {}", productId, entry.getUnitPrice());
+        return entries.merge(productId, entry, (current, fetched) -> current.getUnitPrice() != null ? current : fetched);
+    }
+    
+    // One caller reloads a catalog past its TTL; the others wait for the outcome instead of reading it
+    private synchronized void reloadExpired() {
+        if (isExpired()) {
+            refresh();
+        }
+    }
+    
+    private boolean isExpired() {
+        long loadedAt = loadedAtMillis;
+        return loadedAt != 0 && System.currentTimeMillis() - loadedAt > ttl.toMillis();
+    }
+    
+    private boolean patchedSince(Long productId, long sequence) {
+        return patchedAt.getOrDefault(productId, 0L) > sequence;
+    }
+}
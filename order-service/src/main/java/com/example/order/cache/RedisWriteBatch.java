@@ -0,0 +1,89 @@
+package com.example.order.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+/**
+ * Collects Redis write commands and sends them in a single round trip
+ * Commands are queued in order and flushed as one pipeline, optionally wrapped in MULTI/EXEC
+ * when the writes must be applied atomically
+ */
+public class RedisWriteBatch {
+    
+    private final List<Consumer<RedisOperations<String, Object>>> commands = new ArrayList<>();
+    
+    public RedisWriteBatch set(String key, Object value, Duration ttl) {
+        commands.add(operations -> operations.opsForValue().set(key, value, ttl));
+        return this;
+    }
+    
+    public RedisWriteBatch increment(String key, long delta) {
+        commands.add(operations -> operations.opsForValue().increment(key, delta));
+        return this;
+    }
+    
+    public RedisWriteBatch expire(String key, Duration ttl) {
+        commands.add(operations -> operations.expire(key, ttl));
+        return this;
+    }
+    
+    public RedisWriteBatch hashPut(String key, String field, Object value) {
+        commands.add(operations -> operations.opsForHash().put(key, field, value));
+        return this;
+    }
+    
+    public RedisWriteBatch hashDelete(String key, String field) {
+        commands.add(operations -> operations.opsForHash().delete(key, field));
+        return this;
+    }
+    
+    public RedisWriteBatch publish(String channel, Object message) {
+        commands.add(operations -> operations.convertAndSend(channel, message));
+        return this;
+    }
+    
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+    
+    public int size() {
+        return commands.size();
+    }
+    
+    /**
+     * Sends all queued commands as one pipeline and clears the batch
+     *
+     * @param atomic wrap the commands in MULTI/EXEC
+     * @return the replies of the queued commands, in order
+     */
+    public List<Object> flush(RedisTemplate<String, Object> redisTemplate, boolean atomic) {
+        if (commands.isEmpty()) {
+            return List.of();
+        }
+        List<Consumer<RedisOperations<String, Object>>> pending = new ArrayList<>(commands);
+        commands.clear();
+        
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> stringOperations = (RedisOperations<String, Object>) operations;
+                if (atomic) {
+                    stringOperations.multi();
+                }
+                pending.forEach(command -> command.accept(stringOperations));
+                if (atomic) {
+                    stringOperations.exec();
+                }
+                return null;
+            }
+        });
+    }
+}
@@ -1,17 +1,23 @@
 package com.example.order.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
     
     @Bean(name = "taskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
     public Executor taskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
@@ -21,4 +27,40 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+    
+    /**
+     * Virtual-thread executor used when spring.threads.virtual.enabled=true
+     * Async methods mostly sleep or wait on Redis, so each task gets its own virtual thread instead of a pool slot
+     */
+    @Bean(name = "taskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualThreadTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("OrderService-Async-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+    
+    /**
+     * Executor for the blocking stages (JPA, Redis) of the asynchronous order pipeline
+     * Keeps the Tomcat worker free while orders wait on MySQL, Redis or payment-service
+     */
+    @Bean(name = "orderPipelineExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public Executor orderPipelineExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(10);
+        executor.setMaxPoolSize(20);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("OrderService-Pipeline-");
+        executor.initialize();
+        return executor;
+    }
+    
+    @Bean(name = "orderPipelineExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualThreadOrderPipelineExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("OrderService-Pipeline-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
 }
@@ -0,0 +1,54 @@
+package com.example.order.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.util.unit.DataSize;
+
+import com.example.order.cache.LongKeyNearCache;
+import com.example.order.cache.ProductCatalogCache;
+import com.example.order.cache.TwoTierCache;
+import com.example.order.entity.Order;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class CacheConfig {
+    
+    /**
+     * Near cache for order:{id} lookups, bounded by entry count and approximate heap size
+     */
+    @Bean
+    public TwoTierCache<Order> orderCache(RedisTemplate<String, Object> redisTemplate,
+                                          MeterRegistry meterRegistry,
+                                          @Value("${order.near-cache.maximum-size:10000}") int maximumSize,
+                                          @Value("${order.near-cache.maximum-weight:16MB}") DataSize maximumWeight,
+                                          @Value("${order.near-cache.expire-after-write:30s}") Duration expireAfterWrite) {
+        LongKeyNearCache<Order> nearCache = new LongKeyNearCache<>(
+            maximumSize, maximumWeight.toBytes(), CacheConfig::estimateSize, expireAfterWrite.toNanos());
+        return new TwoTierCache<>("order", "order:", nearCache, redisTemplate, meterRegistry);
+    }
+    
+    @Bean
+    public RedisMessageListenerContainer nearCacheInvalidationContainer(RedisConnectionFactory connectionFactory,
+                                                                        TwoTierCache<Order> orderCache,
+                                                                        ProductCatalogCache productCatalogCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(orderCache, new ChannelTopic(orderCache.getInvalidationChannel()));
+        container.addMessageListener(productCatalogCache, new ChannelTopic(productCatalogCache.getPriceChannel()));
+        return container;
+    }
+    
+    // Object headers, boxed fields and timestamps plus the customer name characters
+    private static int estimateSize(Order order) {
+        String customerName = order.getCustomerName();
+        return 256 + (customerName != null ? customerName.length() * 2 : 0);
+    }
+}
@@ -1,13 +1,20 @@
 package com.example.order.controller;
 
+import com.example.order.dto.BatchOrderResponse;
 import com.example.order.dto.OrderRequest;
 import com.example.order.dto.OrderResponse;
 import com.example.order.entity.Order;
+import com.example.order.service.IdempotencyService;
 import com.example.order.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/")
 public class OrderController {
@@ -15,15 +22,56 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
     
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    // "sync" keeps the request thread for the whole order, "async" releases it to the order pipeline
+    @Value("${order.processing.mode:sync}")
+    private String processingMode;
+    
+    @Value("${order.batch.max-size:500}")
+    private int maxBatchSize;
+    
     @PostMapping("/order")
-    public ResponseEntity<OrderResponse> processOrder(@RequestBody OrderRequest request) {
-        OrderResponse response = orderService.processOrder(request);
+    public CompletableFuture<ResponseEntity<OrderResponse>> processOrder(
+            @RequestBody OrderRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return runOrder(request).thenApply(this::toResponseEntity);
+        }
         
-        if (response.isSuccess()) {
-            return ResponseEntity.ok(response);
-        } else {
-            return ResponseEntity.badRequest().body(response);
+        Object previous = idempotencyService.claim("order", idempotencyKey, request);
+        if (IdempotencyService.MISMATCH.equals(previous)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(new OrderResponse(false, "This Idempotency-Key was already used for a different request")));
+        }
+        if (IdempotencyService.IN_FLIGHT.equals(previous)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new OrderResponse(false, "A request with this Idempotency-Key is still being processed")));
+        }
+        if (previous instanceof OrderResponse storedResponse) {
+            if (OrderService.PAYMENT_UNKNOWN.equals(storedResponse.getStatus())) {
+                return CompletableFuture.completedFuture(replayUnknownOutcome(request, idempotencyKey, storedResponse));
+            }
+            return CompletableFuture.completedFuture(toResponseEntity(storedResponse));
+        }
+        
+        // An unknown payment outcome is stored too, so a retry gets the same order ID instead of a second charge
+        return runOrder(request).whenComplete((response, throwable) -> {
+            if (throwable == null && !response.isRetryable()) {
+                idempotencyService.complete("order", idempotencyKey, request, response);
+            } else {
+                idempotencyService.release("order", idempotencyKey);
+            }
+        }).thenApply(this::toResponseEntity);
+    }
+    
+    @PostMapping("/orders/batch")
+    public ResponseEntity<BatchOrderResponse> processOrderBatch(@RequestBody List<OrderRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > maxBatchSize) {
+            return ResponseEntity.badRequest().build();
         }
+        return ResponseEntity.ok(new BatchOrderResponse(orderService.processOrderBatch(requests)));
     }
     
     @GetMapping("/order/{orderId}")
@@ -41,4 +89,38 @@ public class OrderController {
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Order Service is healthy");
     }
+    
+    private CompletableFuture<OrderResponse> runOrder(OrderRequest request) {
+        if ("async".equalsIgnoreCase(processingMode)) {
+            return orderService.processOrderAsync(request);
+        }
+        try {
+            return CompletableFuture.completedFuture(orderService.processOrder(request));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Replaces a stored PAYMENT_UNKNOWN response with the order's final outcome once recovery has written it
+     */
+    private ResponseEntity<OrderResponse> replayUnknownOutcome(OrderRequest request, String idempotencyKey,
+                                                               OrderResponse storedResponse) {
+        OrderResponse settled = orderService.findSettledOutcome(storedResponse.getOrderId());
+        if (settled == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new OrderResponse(false,
+                "Payment outcome of order " + storedResponse.getOrderId() + " is not known yet",
+                storedResponse.getOrderId(), OrderService.PAYMENT_UNKNOWN, storedResponse.getTotalAmount(), null));
+        }
+        idempotencyService.complete("order", idempotencyKey, request, settled);
+        return toResponseEntity(settled);
+    }
+    
+    private ResponseEntity<OrderResponse> toResponseEntity(OrderResponse response) {
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package com.example.order.dto;
+
+import java.util.List;
+
+public class BatchOrderResponse {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<OrderResponse> results;
+    
+    // Constructors
+    public BatchOrderResponse() {}
+    
+    public BatchOrderResponse(List<OrderResponse> results) {
+        this.results = results;
+        this.total = results.size();
+        this.succeeded = (int) results.stream().filter(OrderResponse::isSuccess).count();
+        this.failed = total - succeeded;
+    }
+    
+    // Getters and Setters
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+    
+    public int getSucceeded() { return succeeded; }
+    public void setSucceeded(int succeeded) { this.succeeded = succeeded; }
+    
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+    
+    public List<OrderResponse> getResults() { return results; }
+    public void setResults(List<OrderResponse> results) { this.results = results; }
+}
@@ -9,6 +9,7 @@ public class OrderResponse {
     private String status;
     private BigDecimal totalAmount;
     private String paymentTransactionId;
+    private boolean retryable;
     
     // Constructors
     public OrderResponse() {}
@@ -45,4 +46,7 @@ public class OrderResponse {
     
     public String getPaymentTransactionId() { return paymentTransactionId; }
     public void setPaymentTransactionId(String paymentTransactionId) { this.paymentTransactionId = paymentTransactionId; }
+    
+    public boolean isRetryable() { return retryable; }
+    public void setRetryable(boolean retryable) { this.retryable = retryable; }
 }
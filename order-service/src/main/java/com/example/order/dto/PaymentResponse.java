@@ -9,6 +9,7 @@ public class PaymentResponse {
     private String transactionId;
     private BigDecimal amount;
     private String status;
+    private boolean retryable;
     
     // Constructors
     public PaymentResponse() {}
@@ -36,4 +37,7 @@ public class PaymentResponse {
     
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+    
+    public boolean isRetryable() { return retryable; }
+    public void setRetryable(boolean retryable) { this.retryable = retryable; }
 }
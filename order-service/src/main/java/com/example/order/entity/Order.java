@@ -1,14 +1,17 @@
 package com.example.order.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "orders")
-public class Order {
+public class Order implements Persistable<Long> {
+    // Assigned by OrderIdAllocator before the payment call, so the row is inserted once with its final status
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
     @Column(name = "customer_name", nullable = false)
@@ -32,6 +35,11 @@ public class Order {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Assigned IDs hide whether the row exists yet; tells Spring Data to persist instead of merge
+    @Transient
+    @JsonIgnore
+    private boolean isNew = true;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -43,6 +51,12 @@ public class Order {
         updatedAt = LocalDateTime.now();
     }
     
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        isNew = false;
+    }
+    
     // Constructors
     public Order() {}
     
@@ -54,6 +68,7 @@ public class Order {
     }
     
     // Getters and Setters
+    @Override
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     
@@ -77,4 +92,8 @@ public class Order {
     
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
+    @Override
+    @JsonIgnore
+    public boolean isNew() { return isNew; }
 }
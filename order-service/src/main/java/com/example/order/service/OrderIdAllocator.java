@@ -0,0 +1,93 @@
+package com.example.order.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hi/lo order ID allocator backed by the id_generator table
+ * Each refill reserves blockSize IDs with one auto-committed UPDATE; callers then take IDs from the
+ * current block with a single atomic increment and only contend on the lock when a block runs out.
+ */
+@Component
+public class OrderIdAllocator {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderIdAllocator.class);
+    
+    private static final String SEQUENCE_NAME = "orders";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${order.id-allocator.block-size:100}")
+    private int blockSize;
+    
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private volatile IdBlock current = new IdBlock(0, 0);
+    
+    public long nextId() {
+        while (true) {
+            IdBlock block = current;
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return id;
+            }
+            refill(block);
+        }
+    }
+    
+    private void refill(IdBlock exhausted) {
+        refillLock.lock();
+        try {
+            // Another caller may have refilled while we waited
+            if (current == exhausted) {
+                current = fetchBlock();
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+    
+    /**
+     * LAST_INSERT_ID(expr) makes the new next_val readable on the same connection without a locking SELECT
+     */
+    private IdBlock fetchBlock() {
+        Long end = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE id_generator SET next_val = LAST_INSERT_ID(next_val + ?) WHERE name = ?")) {
+                update.setInt(1, blockSize);
+                update.setString(2, SEQUENCE_NAME);
+                if (update.executeUpdate() == 0) {
+                    throw new IllegalStateException("No id_generator row for " + SEQUENCE_NAME);
+                }
+            }
+            try (Statement select = connection.createStatement();
+                 ResultSet resultSet = select.executeQuery("SELECT LAST_INSERT_ID()")) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        });
+        logger.info("Allocated order ID block [{}, {})", end - blockSize, end);
+        return new IdBlock(end - blockSize, end);
+    }
+    
+    private static final class IdBlock {
+        private final AtomicLong next;
+        private final long end;
+        
+        IdBlock(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
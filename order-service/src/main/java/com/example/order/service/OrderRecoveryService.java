@@ -0,0 +1,106 @@
+package com.example.order.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.order.dto.PaymentResponse;
+import com.example.order.entity.Order;
+import com.example.order.repository.OrderRepository;
+
+/**
+ * Settles orders whose process stopped between the payment call and the final write
+ * Stale in-flight markers are resolved against payment-service, which is the source of truth for the outcome.
+ */
+@Service
+public class OrderRecoveryService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderRecoveryService.class);
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private OrderRepository orderRepository;
+    
+    @Autowired
+    private OrderService orderService;
+    
+    @Autowired
+    private PaymentClient paymentClient;
+    
+    // Markers younger than this may still belong to a running request
+    @Value("${order.recovery.grace-period:2m}")
+    private Duration gracePeriod;
+    
+    @Scheduled(initialDelayString = "${order.recovery.interval:60s}", fixedDelayString = "${order.recovery.interval:60s}")
+    public void recoverInFlightOrders() {
+        Map<Object, Object> inFlight = redisTemplate.opsForHash().entries(OrderService.IN_FLIGHT_KEY);
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        
+        LocalDateTime cutoff = LocalDateTime.now().minus(gracePeriod);
+        int recovered = 0;
+        for (Map.Entry<Object, Object> entry : inFlight.entrySet()) {
+            if (!(entry.getValue() instanceof Order order)) {
+                logger.warn("Dropping unreadable in-flight marker: {}", entry.getKey());
+                redisTemplate.opsForHash().delete(OrderService.IN_FLIGHT_KEY, entry.getKey());
+                continue;
+            }
+            if (order.getCreatedAt() != null && order.getCreatedAt().isAfter(cutoff)) {
+                continue;
+            }
+            try {
+                if (recover(order)) {
+                    recovered++;
+                }
+            } catch (Exception e) {
+                logger.warn("Recovery of order: {} failed, will retry - {}", order.getId(), e.getMessage());
+            }
+        }
+        logger.info("Order recovery pass: {} in flight, {} settled", inFlight.size(), recovered);
+    }
+    
+    private boolean recover(Order order) {
+        String field = order.getId().toString();
+        if (orderRepository.existsById(order.getId())) {
+            // Written before the process stopped; only the marker was left behind
+            redisTemplate.opsForHash().delete(OrderService.IN_FLIGHT_KEY, field);
+            return false;
+        }
+        
+        List<PaymentResponse> payments = paymentClient.findPaymentsByOrderId(order.getId());
+        if (payments.stream().anyMatch(payment -> "COMPLETED".equals(payment.getStatus()))) {
+            return settle(order, "COMPLETED");
+        }
+        if (payments.stream().anyMatch(payment -> "PENDING".equals(payment.getStatus()))) {
+            logger.info("Payment for order: {} still pending, retrying later", order.getId());
+            return false;
+        }
+        // Declined, or payment-service never received the request
+        return settle(order, "PAYMENT_FAILED");
+    }
+    
+    private boolean settle(Order order, String status) {
+        try {
+            orderService.settleOrder(order, status);
+            logger.info("Recovered order: {} as {}", order.getId(), status);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Another instance settled it first
+            redisTemplate.opsForHash().delete(OrderService.IN_FLIGHT_KEY, order.getId().toString());
+            return false;
+        }
+    }
+}
@@ -1,148 +1,265 @@
 package com.example.order.service;
 
+import com.example.order.cache.ProductCatalogCache;
+import com.example.order.cache.RedisWriteBatch;
+import com.example.order.cache.TwoTierCache;
 import com.example.order.dto.*;
 import com.example.order.entity.Order;
 import com.example.order.repository.OrderRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class OrderService {
     
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
     
+    // Redis hash of orders whose payment outcome is not yet written, keyed by order ID
+    public static final String IN_FLIGHT_KEY = "orders:in-flight";
+    
+    // Response status of an order whose payment call failed after it was sent; OrderRecoveryService settles it
+    public static final String PAYMENT_UNKNOWN = "PAYMENT_UNKNOWN";
+    
     @Autowired
     private OrderRepository orderRepository;
     
     @Autowired
-    private RestTemplate restTemplate;
+    private OrderIdAllocator orderIdAllocator;
+    
+    @Autowired
+    private PaymentClient paymentClient;
     
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
     
+    @Autowired
+    private TwoTierCache<Order> orderCache;
+    
+    @Autowired
+    private ProductCatalogCache productCatalogCache;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
     @Autowired
     private AsyncNotificationService asyncNotificationService;
     
-    @Value("${payment.service.url}")
-    private String paymentServiceUrl;
+    @Autowired
+    @Qualifier("orderPipelineExecutor")
+    private Executor orderPipelineExecutor;
+    
+    @Value("${order.cache.atomic-writes:false}")
+    private boolean atomicCacheWrites;
     
-    @Transactional
+    @Value("${order.batch.payment-concurrency:8}")
+    private int batchPaymentConcurrency;
+    
+    /**
+     * Not transactional: the order row is written once, with its final status, after payment-service answers.
+     * If the process dies in between, the in-flight marker lets OrderRecoveryService settle the order.
+     */
     public OrderResponse processOrder(OrderRequest request) {
         logger.info("Starting order processing for customer: {}, productId: {}, quantity: {}", 
                    request.getCustomerName(), request.getProductId(), request.getQuantity());
         
+        Order order;
+        try {
+            order = prepareOrder(request);
+        } catch (Exception e) {
+            // Nothing was sent to payment-service yet
+            logger.error("Order processing failed with exception: {}", e.getMessage(), e);
+            return retryableFailure("Order processing error: " + e.getMessage());
+        }
+        
         try {
-            // Calculate total amount (simplified - using base price of $100 per product)
-            BigDecimal unitPrice = new BigDecimal("100.00");
-            BigDecimal totalAmount = unitPrice.multiply(new BigDecimal(request.getQuantity()));
-            logger.debug("Calculated total amount: {} for quantity: {}", totalAmount, request.getQuantity());
-            
-            // Create order record
-            Order order = new Order(
-                request.getCustomerName(), 
-                request.getProductId(), 
-                request.getQuantity(), 
-                totalAmount
-            );
-            order.setStatus("CREATED");
-            Order savedOrder = orderRepository.save(order);
-            logger.info("Order created successfully with ID: {} and status: {}", savedOrder.getId(), savedOrder.getStatus());
-            
-            // Cache order information in Redis
-            String orderCacheKey = "order:" + savedOrder.getId();
-            redisTemplate.opsForValue().set(orderCacheKey, savedOrder, Duration.ofHours(24));
-            logger.debug("Order cached in Redis with key: {}", orderCacheKey);
-            
-            // Store customer order count in Redis
-            String customerKey = "customer:orders:" + request.getCustomerName();
-            redisTemplate.opsForValue().increment(customerKey, 1);
-            redisTemplate.expire(customerKey, Duration.ofDays(30));
-            logger.debug("Updated customer order count for: {}", request.getCustomerName());
-            
             // Process payment
-            PaymentRequest paymentRequest = new PaymentRequest(
-                savedOrder.getId(),
-                request.getProductId(),
-                request.getQuantity(),
-                totalAmount,
-                request.getPaymentMethod()
-            );
-            
-            String paymentUrl = paymentServiceUrl + "/pay";
+            PaymentRequest paymentRequest = buildPaymentRequest(order, request);
             logger.info("Initiating payment processing for order: {} with amount: {} via {}", 
-                       savedOrder.getId(), totalAmount, request.getPaymentMethod());
+                       order.getId(), order.getTotalAmount(), request.getPaymentMethod());
             
-            ResponseEntity<PaymentResponse> paymentResponse = restTemplate.postForEntity(
-                paymentUrl, 
-                paymentRequest, 
-                PaymentResponse.class
-            );
+            PaymentResponse paymentResponse = paymentClient.pay(paymentRequest);
+            return completeOrder(order, paymentResponse);
             
-            if (paymentResponse.getBody() != null && paymentResponse.getBody().isSuccess()) {
-                logger.info("Payment successful for order: {} with transaction ID: {}", 
-                           savedOrder.getId(), paymentResponse.getBody().getTransactionId());
-                
-                // Payment successful - update order status
-                savedOrder.setStatus("COMPLETED");
-                orderRepository.save(savedOrder);
-                logger.debug("Order status updated to COMPLETED for order: {}", savedOrder.getId());
-                
-                // Update cache
-                redisTemplate.opsForValue().set(orderCacheKey, savedOrder, Duration.ofHours(24));
-                
-                // Trigger async operations - these will be traced automatically by OpenTelemetry
-                logger.info("Triggering async post-processing for order: {}", savedOrder.getId());
-                
-                triggerAsyncPostProcessing(savedOrder);
-                
-                return new OrderResponse(
-                    true,
-                    "Order processed successfully",
-                    savedOrder.getId(),
-                    savedOrder.getStatus(),
-                    savedOrder.getTotalAmount(),
-                    paymentResponse.getBody().getTransactionId()
-                );
-            } else {
-                logger.warn("Payment failed for order: {}", savedOrder.getId());
-                
-                // Payment failed - update order status
-                savedOrder.setStatus("PAYMENT_FAILED");
-                orderRepository.save(savedOrder);
-                logger.debug("Order status updated to PAYMENT_FAILED for order: {}", savedOrder.getId());
-                
-                // Update cache
-                redisTemplate.opsForValue().set(orderCacheKey, savedOrder, Duration.ofHours(24));
+        } catch (HttpClientErrorException.Conflict e) {
+            // The same payment is already running in payment-service
+            logger.error("Payment for order: {} already in progress - {}", order.getId(), e.getMessage());
+            return unknownOutcome(order, e.getMessage());
+        } catch (HttpClientErrorException e) {
+            // Refused by payment-service before it acted; recovery finds no payment and fails the order
+            logger.error("Payment request for order: {} refused - {}", order.getId(), e.getMessage());
+            return retryableFailure("Order processing error: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Order processing failed with exception: {}", e.getMessage(), e);
+            return unknownOutcome(order, e.getMessage());
+        }
+    }
+    
+    /**
+     * Asynchronous variant of processOrder
+     * ID allocation, payment call and the final write run as chained stages so no request
+     * thread is held while waiting on MySQL, Redis or payment-service
+     */
+    public CompletableFuture<OrderResponse> processOrderAsync(OrderRequest request) {
+        logger.info("Starting async order processing for customer: {}, productId: {}, quantity: {}",
+                   request.getCustomerName(), request.getProductId(), request.getQuantity());
+        
+        return CompletableFuture.supplyAsync(() -> prepareOrder(request), orderPipelineExecutor)
+            .thenCompose(order -> {
+                PaymentRequest paymentRequest = buildPaymentRequest(order, request);
+                logger.info("Initiating async payment processing for order: {} with amount: {} via {}",
+                           order.getId(), order.getTotalAmount(), request.getPaymentMethod());
                 
-                String errorMessage = paymentResponse.getBody() != null ? 
-                    paymentResponse.getBody().getMessage() : "Payment processing failed";
-                logger.error("Payment failure details: {}", errorMessage);
-                return new OrderResponse(false, "Order failed: " + errorMessage);
+                return paymentClient.payAsync(paymentRequest)
+                    .handleAsync((paymentResponse, failure) -> {
+                        try {
+                            if (failure == null) {
+                                return completeOrder(order, paymentResponse);
+                            }
+                            logger.error("Async payment call failed for order: {} - {}", order.getId(),
+                                        unwrap(failure).getMessage());
+                            return unknownOutcome(order, unwrap(failure).getMessage());
+                        } catch (RuntimeException e) {
+                            logger.error("Async order processing failed with exception: {}", e.getMessage(), e);
+                            return unknownOutcome(order, e.getMessage());
+                        }
+                    }, orderPipelineExecutor);
+            })
+            .exceptionally(throwable -> {
+                // Only the order preparation gets here, before anything was sent to payment-service
+                Throwable cause = unwrap(throwable);
+                logger.error("Async order processing failed with exception: {}", cause.getMessage(), cause);
+                return retryableFailure("Order processing error: " + cause.getMessage());
+            });
+    }
+    
+    /**
+     * Bulk variant of processOrder for POST /orders/batch
+     * IDs are pre-allocated, payments run with bounded concurrency, and the settled orders are inserted in one
+     * JDBC-batched transaction. Results keep the request order.
+     */
+    public List<OrderResponse> processOrderBatch(List<OrderRequest> requests) {
+        logger.info("Starting batch order processing for {} orders", requests.size());
+        
+        // Requests that cannot be priced fail on their own and are never paid for
+        OrderResponse[] rejected = new OrderResponse[requests.size()];
+        List<Order> orders = new ArrayList<>(requests.size());
+        List<OrderRequest> pricedRequests = new ArrayList<>(requests.size());
+        RedisWriteBatch inFlightMarkers = new RedisWriteBatch();
+        for (int i = 0; i < requests.size(); i++) {
+            Order order;
+            try {
+                order = newOrder(requests.get(i));
+            } catch (RuntimeException e) {
+                logger.warn("Rejecting batch order for productId: {} - {}", requests.get(i).getProductId(), e.getMessage());
+                rejected[i] = retryableFailure("Order processing error: " + e.getMessage());
+                continue;
+            }
+            order.setId(orderIdAllocator.nextId());
+            inFlightMarkers.hashPut(IN_FLIGHT_KEY, order.getId().toString(), order);
+            orders.add(order);
+            pricedRequests.add(requests.get(i));
+        }
+        flushCacheWrites(inFlightMarkers);
+        
+        PaymentResponse[] paymentResponses = new PaymentResponse[orders.size()];
+        String[] paymentErrors = new String[orders.size()];
+        payInParallel(orders, pricedRequests, paymentResponses, paymentErrors);
+        
+        List<OrderResponse> results = new ArrayList<>(requests.size());
+        List<Order> settledOrders = new ArrayList<>(orders.size());
+        List<Order> completedOrders = new ArrayList<>();
+        int paid = 0;
+        for (OrderResponse rejection : rejected) {
+            if (rejection != null) {
+                results.add(rejection);
+                continue;
+            }
+            int i = paid++;
+            Order order = orders.get(i);
+            PaymentResponse paymentResponse = paymentResponses[i];
+            if (paymentErrors[i] != null) {
+                // Outcome unknown - not written, left to OrderRecoveryService
+                results.add(unknownOutcome(order, paymentErrors[i]));
+                continue;
             }
             
+            if (paymentResponse != null && paymentResponse.isSuccess()) {
+                order.setStatus("COMPLETED");
+                completedOrders.add(order);
+                results.add(new OrderResponse(true, "Order processed successfully", order.getId(),
+                                              order.getStatus(), order.getTotalAmount(), paymentResponse.getTransactionId()));
+            } else {
+                order.setStatus("PAYMENT_FAILED");
+                String errorMessage = paymentResponse != null ?
+                    paymentResponse.getMessage() : "Payment processing failed";
+                results.add(new OrderResponse(false, "Order failed: " + errorMessage));
+            }
+            settledOrders.add(order);
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> orderRepository.saveAll(settledOrders));
+        logger.info("Inserted {} settled orders in one batched transaction", settledOrders.size());
+        
+        RedisWriteBatch cacheWrites = new RedisWriteBatch();
+        settledOrders.forEach(order -> settledOrderCacheWrites(order, cacheWrites));
+        try {
+            flushCacheWrites(cacheWrites);
         } catch (Exception e) {
-            logger.error("Order processing failed with exception: {}", e.getMessage(), e);
-            return new OrderResponse(false, "Order processing error: " + e.getMessage());
+            logger.warn("Failed to cache batch of {} orders: {}", settledOrders.size(), e.getMessage());
+        }
+        completedOrders.forEach(this::triggerAsyncPostProcessing);
+        
+        logger.info("Batch order processing finished: {} completed of {}", completedOrders.size(), orders.size());
+        return results;
+    }
+    
+    /**
+     * Calls payment-service for every order with at most batchPaymentConcurrency calls in flight
+     * Each worker pulls the next unpaid index until the batch is exhausted.
+     */
+    private void payInParallel(List<Order> orders, List<OrderRequest> requests,
+                               PaymentResponse[] paymentResponses, String[] paymentErrors) {
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(batchPaymentConcurrency, orders.size()));
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+        for (int w = 0; w < workers; w++) {
+            futures[w] = CompletableFuture.runAsync(() -> {
+                for (int i = next.getAndIncrement(); i < orders.size(); i = next.getAndIncrement()) {
+                    try {
+                        paymentResponses[i] = paymentClient.pay(buildPaymentRequest(orders.get(i), requests.get(i)));
+                    } catch (Exception e) {
+                        logger.error("Payment call failed for order: {} - {}", orders.get(i).getId(), e.getMessage());
+                        paymentErrors[i] = e.getMessage();
+                    }
+                }
+            }, orderPipelineExecutor);
         }
+        CompletableFuture.allOf(futures).join();
     }
     
     public Order getOrderById(Long orderId) {
         logger.debug("Retrieving order by ID: {}", orderId);
         
-        // Check cache first
-        String cacheKey = "order:" + orderId;
-        Order cachedOrder = (Order) redisTemplate.opsForValue().get(cacheKey);
+        // Check near cache, then Redis
+        long stamp = orderCache.invalidationStamp(orderId);
+        Order cachedOrder = orderCache.get(orderId);
         
         if (cachedOrder != null) {
             logger.debug("Order found in cache: {}", orderId);
@@ -151,7 +268,165 @@ public class OrderService {
         
         // Fetch from database
         logger.debug("Order not in cache, fetching from database: {}", orderId);
-        return orderRepository.findById(orderId).orElse(null);
+        Order order = orderRepository.findById(orderId).orElse(null);
+        if (order != null) {
+            orderCache.putLocal(orderId, order, stamp);
+            return order;
+        }
+        
+        // Not settled yet - report the in-flight snapshot
+        Object inFlight = redisTemplate.opsForHash().get(IN_FLIGHT_KEY, orderId.toString());
+        return inFlight instanceof Order inFlightOrder ? inFlightOrder : null;
+    }
+    
+    /**
+     * Writes the order once with its final status, then caches it and clears its in-flight marker
+     * in one Redis pipeline
+     */
+    public void settleOrder(Order order, String status) {
+        order.setStatus(status);
+        orderRepository.save(order);
+        logger.debug("Order {} written with final status {}", order.getId(), status);
+        
+        try {
+            flushCacheWrites(settledOrderCacheWrites(order, new RedisWriteBatch()));
+        } catch (Exception e) {
+            // The row is committed; recovery will find it and drop the marker
+            logger.warn("Failed to cache settled order: {} - {}", order.getId(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Builds the order under a pre-allocated ID and records it as in flight
+     * Nothing is written to MySQL until the payment outcome is known
+     */
+    private Order prepareOrder(OrderRequest request) {
+        Order order = newOrder(request);
+        order.setId(orderIdAllocator.nextId());
+        redisTemplate.opsForHash().put(IN_FLIGHT_KEY, order.getId().toString(), order);
+        logger.info("Order {} allocated and marked in flight", order.getId());
+        return order;
+    }
+    
+    private Order newOrder(OrderRequest request) {
+        // Calculate total amount from the in-memory catalog price
+        BigDecimal unitPrice = productCatalogCache.getUnitPrice(request.getProductId());
+        BigDecimal totalAmount = unitPrice.multiply(new BigDecimal(request.getQuantity()));
+        logger.debug("Calculated total amount: {} for quantity: {} at unit price: {}", totalAmount, request.getQuantity(), unitPrice);
+        
+        // Create order record
+        Order order = new Order(
+            request.getCustomerName(),
+            request.getProductId(),
+            request.getQuantity(),
+            totalAmount
+        );
+        order.setStatus("CREATED");
+        order.setCreatedAt(LocalDateTime.now());
+        return order;
+    }
+    
+    /**
+     * Queues the cache writes for a settled order: snapshot, cross-instance invalidation,
+     * customer order count and removal of the in-flight marker
+     */
+    private RedisWriteBatch settledOrderCacheWrites(Order order, RedisWriteBatch cacheWrites) {
+        String customerKey = "customer:orders:" + order.getCustomerName();
+        return cacheWrites.set("order:" + order.getId(), order, Duration.ofHours(24))
+            .publish(orderCache.getInvalidationChannel(), order.getId())
+            .increment(customerKey, 1)
+            .expire(customerKey, Duration.ofDays(30))
+            .hashDelete(IN_FLIGHT_KEY, order.getId().toString());
+    }
+    
+    private void flushCacheWrites(RedisWriteBatch cacheWrites) {
+        int commands = cacheWrites.size();
+        cacheWrites.flush(redisTemplate, atomicCacheWrites);
+        logger.debug("Flushed {} cache writes to Redis in one round trip", commands);
+    }
+    
+    private PaymentRequest buildPaymentRequest(Order order, OrderRequest request) {
+        return new PaymentRequest(
+            order.getId(),
+            order.getCustomerName(),
+            request.getProductId(),
+            request.getQuantity(),
+            order.getTotalAmount(),
+            request.getPaymentMethod()
+        );
+    }
+    
+    private OrderResponse completeOrder(Order order, PaymentResponse paymentResponse) {
+        if (paymentResponse != null && paymentResponse.isSuccess()) {
+            logger.info("Payment successful for order: {} with transaction ID: {}",
+                       order.getId(), paymentResponse.getTransactionId());
+            
+            settleOrder(order, "COMPLETED");
+            
+            // Trigger async operations - these will be traced automatically by OpenTelemetry
+            logger.info("Triggering async post-processing for order: {}", order.getId());
+            
+            triggerAsyncPostProcessing(order);
+            
+            return new OrderResponse(
+                true,
+                "Order processed successfully",
+                order.getId(),
+                order.getStatus(),
+                order.getTotalAmount(),
+                paymentResponse.getTransactionId()
+            );
+        } else {
+            logger.warn("Payment failed for order: {}", order.getId());
+            
+            settleOrder(order, "PAYMENT_FAILED");
+            
+            String errorMessage = paymentResponse != null ?
+                paymentResponse.getMessage() : "Payment processing failed";
+            logger.error("Payment failure details: {}", errorMessage);
+            OrderResponse response = new OrderResponse(false, "Order failed: " + errorMessage);
+            // Only payment-service can say it did not act; a missing answer says nothing
+            response.setRetryable(paymentResponse != null && paymentResponse.isRetryable());
+            return response;
+        }
+    }
+    
+    /**
+     * Final outcome of an order reported as PAYMENT_UNKNOWN, once OrderRecoveryService or a late answer
+     * wrote it
+     *
+     * @return the outcome, or null while the order is still in flight
+     */
+    public OrderResponse findSettledOutcome(Long orderId) {
+        Order order = getOrderById(orderId);
+        if (order == null || "CREATED".equals(order.getStatus())) {
+            return null;
+        }
+        boolean completed = "COMPLETED".equals(order.getStatus());
+        return new OrderResponse(completed, completed ? "Order processed successfully" : "Order failed: " + order.getStatus(),
+                                 order.getId(), order.getStatus(), order.getTotalAmount(), null);
+    }
+    
+    /**
+     * The payment request may have reached payment-service, so the order must not be run again under a new ID
+     */
+    private static OrderResponse unknownOutcome(Order order, String message) {
+        return new OrderResponse(false, "Order processing error: " + message, order.getId(), PAYMENT_UNKNOWN,
+                                 order.getTotalAmount(), null);
+    }
+    
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+    }
+    
+    /**
+     * Transient failures are not stored against the Idempotency-Key, so a retry with the same key runs the order again
+     */
+    private static OrderResponse retryableFailure(String message) {
+        OrderResponse response = new OrderResponse(false, message);
+        response.setRetryable(true);
+        return response;
     }
     
     /**
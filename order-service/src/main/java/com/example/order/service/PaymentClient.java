@@ -0,0 +1,119 @@
+package com.example.order.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.order.dto.PaymentRequest;
+import com.example.order.dto.PaymentResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Client for payment-service
+ * Offers a blocking call for the synchronous order path and a non-blocking call for the async pipeline
+ */
+@Component
+public class PaymentClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PaymentClient.class);
+    
+    @Autowired
+    private RestTemplate restTemplate;
+    
+    @Autowired
+    private HttpClient httpClient;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${payment.service.url}")
+    private String paymentServiceUrl;
+    
+    @Value("${inter-service.http.response-timeout:5s}")
+    private Duration requestTimeout;
+    
+    public PaymentResponse pay(PaymentRequest paymentRequest) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(IdempotencyService.HEADER, idempotencyKey(paymentRequest));
+        try {
+            ResponseEntity<PaymentResponse> paymentResponse = restTemplate.postForEntity(
+                paymentServiceUrl + "/pay",
+                new HttpEntity<>(paymentRequest, headers),
+                PaymentResponse.class
+            );
+            return paymentResponse.getBody();
+        } catch (HttpClientErrorException.BadRequest e) {
+            // A declined payment comes back as 400 with a PaymentResponse body
+            return e.getResponseBodyAs(PaymentResponse.class);
+        }
+    }
+    
+    /**
+     * Sends the payment request without parking the calling thread.
+     * payment-service answers failures with 400 and a PaymentResponse body, so the body is
+     * decoded for any status that carries one.
+     */
+    public CompletableFuture<PaymentResponse> payAsync(PaymentRequest paymentRequest) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(paymentServiceUrl + "/pay"))
+                .timeout(requestTimeout)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header(IdempotencyService.HEADER, idempotencyKey(paymentRequest))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(paymentRequest)))
+                .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> {
+                if (response.body() == null || response.body().length == 0) {
+                    logger.warn("Empty payment response for order: {} (HTTP {})",
+                               paymentRequest.getOrderId(), response.statusCode());
+                    return null;
+                }
+                try {
+                    return objectMapper.readValue(response.body(), PaymentResponse.class);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unreadable payment response (HTTP " + response.statusCode() + ")", e);
+                }
+            });
+    }
+    
+    /**
+     * @return every payment recorded for the order, used to settle orders interrupted mid-flight
+     */
+    public List<PaymentResponse> findPaymentsByOrderId(Long orderId) {
+        PaymentResponse[] payments = restTemplate.getForObject(
+            paymentServiceUrl + "/payments/order/{orderId}",
+            PaymentResponse[].class,
+            orderId
+        );
+        return payments != null ? Arrays.asList(payments) : List.of();
+    }
+    
+    // One payment per order, however often the call is retried
+    private String idempotencyKey(PaymentRequest paymentRequest) {
+        return "order-" + paymentRequest.getOrderId();
+    }
+}
@@ -0,0 +1,6 @@
+-- Store the final response of an Idempotency-Key together with the fingerprint of its request
+-- KEYS[1] key, KEYS[2] fingerprint key
+-- ARGV[1] response, ARGV[2] request fingerprint, ARGV[3] TTL in ms
+redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3])
+redis.call('SET', KEYS[2], ARGV[2], 'PX', ARGV[3])
+return 1
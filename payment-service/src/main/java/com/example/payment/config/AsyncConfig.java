@@ -1,17 +1,23 @@
 package com.example.payment.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
     
     @Bean(name = "taskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
     public Executor taskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(3);
@@ -21,4 +27,56 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+    
+    /**
+     * Virtual-thread executor used when spring.threads.virtual.enabled=true
+     * Async methods mostly sleep or wait on Redis, so each task gets its own virtual thread instead of a pool slot
+     */
+    @Bean(name = "taskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualThreadTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("PaymentService-Async-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+    
+    /**
+     * Executor for the blocking stages (JPA, inventory calls) that follow a gateway response
+     * Gateway calls complete on their own threads, so no request thread waits out the gateway latency
+     */
+    @Bean(name = "paymentCompletionExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public Executor paymentCompletionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(10);
+        executor.setMaxPoolSize(20);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("PaymentService-Completion-");
+        executor.initialize();
+        return executor;
+    }
+    
+    @Bean(name = "paymentCompletionExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualThreadPaymentCompletionExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("PaymentService-Completion-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+    
+    /**
+     * Executor for inline risk scoring, CPU-bound and short, so a small platform pool in both threading modes
+     * A full queue rejects the task and the payment continues with the fallback decision instead of waiting
+     */
+    @Bean(name = "riskScoringExecutor")
+    public Executor riskScoringExecutor() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("PaymentService-RiskScoring-");
+        executor.initialize();
+        return executor;
+    }
 }
@@ -0,0 +1,147 @@
+package com.example.payment.config;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+
+/**
+ * HTTP clients for calls to inventory-service
+ * Connections are pooled per route with keep-alive and bounded connect, read, response and pool-wait timeouts,
+ * so a slow downstream service fails requests fast instead of tying up every request thread
+ */
+@Configuration
+public class HttpClientConfig {
+    
+    @Value("${inventory.service.url}")
+    private String inventoryServiceUrl;
+    
+    @Value("${inventory.service.max-connections:100}")
+    private int inventoryMaxConnections;
+    
+    @Value("${inter-service.http.max-total-connections:200}")
+    private int maxTotalConnections;
+    
+    @Value("${inter-service.http.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+    
+    @Value("${inter-service.http.connect-timeout:1s}")
+    private Duration connectTimeout;
+    
+    @Value("${inter-service.http.read-timeout:5s}")
+    private Duration readTimeout;
+    
+    @Value("${inter-service.http.response-timeout:5s}")
+    private Duration responseTimeout;
+    
+    @Value("${inter-service.http.connection-request-timeout:500ms}")
+    private Duration connectionRequestTimeout;
+    
+    @Value("${inter-service.http.keep-alive:30s}")
+    private Duration keepAlive;
+    
+    @Value("${inter-service.http.http2-enabled:false}")
+    private boolean http2Enabled;
+    
+    @Bean
+    public PoolingHttpClientConnectionManager interServiceConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxTotalConnections)
+            .setMaxConnPerRoute(maxConnectionsPerRoute)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .setTimeToLive(TimeValue.ofMinutes(5))
+                .build())
+            .build();
+        
+        // Dedicated limit for the one route this service actually calls
+        connectionManager.setMaxPerRoute(inventoryRoute(), inventoryMaxConnections);
+        return connectionManager;
+    }
+    
+    @Bean
+    public RestTemplate restTemplate(PoolingHttpClientConnectionManager interServiceConnectionManager,
+                                     MeterRegistry meterRegistry) {
+        if (http2Enabled) {
+            // HTTP/2 multiplexes requests over one connection per host, so no pool is needed
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient());
+            requestFactory.setReadTimeout(responseTimeout);
+            return new RestTemplate(requestFactory);
+        }
+        
+        CloseableHttpClient httpClient = HttpClients.custom()
+            .setConnectionManager(new LeaseTimingConnectionManager(interServiceConnectionManager, meterRegistry))
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                .setResponseTimeout(Timeout.of(responseTimeout))
+                .build())
+            .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+            .evictIdleConnections(TimeValue.of(keepAlive))
+            .build();
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+    
+    /**
+     * JDK client for HTTP/2 mode and non-blocking calls, configured with the same connect timeout
+     */
+    @Bean
+    public HttpClient httpClient() {
+        return HttpClient.newBuilder()
+            .connectTimeout(connectTimeout)
+            .version(http2Enabled ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .build();
+    }
+    
+    /**
+     * Exposes pool state through actuator: totals via the Micrometer binder
+     * (httpcomponents.httpclient.pool.*) plus leased, available and pending connections for the inventory route
+     */
+    @Bean
+    public MeterBinder interServicePoolMetrics(PoolingHttpClientConnectionManager interServiceConnectionManager) {
+        return registry -> {
+            new PoolingHttpClientConnectionManagerMetricsBinder(interServiceConnectionManager, "inter-service")
+                .bindTo(registry);
+            
+            HttpRoute route = inventoryRoute();
+            Gauge.builder("http.client.pool.route.connections", interServiceConnectionManager,
+                          manager -> manager.getStats(route).getLeased())
+                .tag("route", route.getTargetHost().toURI()).tag("state", "leased")
+                .register(registry);
+            Gauge.builder("http.client.pool.route.connections", interServiceConnectionManager,
+                          manager -> manager.getStats(route).getAvailable())
+                .tag("route", route.getTargetHost().toURI()).tag("state", "available")
+                .register(registry);
+            Gauge.builder("http.client.pool.route.connections", interServiceConnectionManager,
+                          manager -> manager.getStats(route).getPending())
+                .tag("route", route.getTargetHost().toURI()).tag("state", "pending")
+                .register(registry);
+        };
+    }
+    
+    private HttpRoute inventoryRoute() {
+        return new HttpRoute(HttpHost.create(URI.create(inventoryServiceUrl)));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.payment.config;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Connection manager decorator that records how long requests wait to lease a pooled connection
+ * Exported as http.client.pool.lease.wait; a growing wait time means the per-route pool is too small
+ * or the downstream service is slow to release connections. Pool control is passed through as well, so
+ * the client's idle connection evictor still reaches the pool behind the decorator.
+ */
+public class LeaseTimingConnectionManager implements HttpClientConnectionManager, ConnPoolControl<HttpRoute> {
+    
+    private final PoolingHttpClientConnectionManager delegate;
+    private final MeterRegistry meterRegistry;
+    
+    public LeaseTimingConnectionManager(PoolingHttpClientConnectionManager delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+    
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest leaseRequest = delegate.lease(id, route, requestTimeout, state);
+        Timer leaseTimer = Timer.builder("http.client.pool.lease.wait")
+            .description("Time spent waiting for a pooled connection")
+            .tag("route", route.getTargetHost().toURI())
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout) throws InterruptedException, ExecutionException, TimeoutException {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                try {
+                    return leaseRequest.get(timeout);
+                } finally {
+                    sample.stop(leaseTimer);
+                }
+            }
+            
+            @Override
+            public boolean cancel() {
+                return leaseRequest.cancel();
+            }
+        };
+    }
+    
+    @Override
+    public void release(ConnectionEndpoint endpoint, Object newState, TimeValue validDuration) {
+        delegate.release(endpoint, newState, validDuration);
+    }
+    
+    @Override
+    public void connect(ConnectionEndpoint endpoint, TimeValue connectTimeout, HttpContext context) throws IOException {
+        delegate.connect(endpoint, connectTimeout, context);
+    }
+    
+    @Override
+    public void upgrade(ConnectionEndpoint endpoint, HttpContext context) throws IOException {
+        delegate.upgrade(endpoint, context);
+    }
+    
+    @Override
+    public void closeIdle(TimeValue idleTime) {
+        delegate.closeIdle(idleTime);
+    }
+    
+    @Override
+    public void closeExpired() {
+        delegate.closeExpired();
+    }
+    
+    @Override
+    public void setMaxTotal(int max) {
+        delegate.setMaxTotal(max);
+    }
+    
+    @Override
+    public int getMaxTotal() {
+        return delegate.getMaxTotal();
+    }
+    
+    @Override
+    public void setDefaultMaxPerRoute(int max) {
+        delegate.setDefaultMaxPerRoute(max);
+    }
+    
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return delegate.getDefaultMaxPerRoute();
+    }
+    
+    @Override
+    public void setMaxPerRoute(HttpRoute route, int max) {
+        delegate.setMaxPerRoute(route, max);
+    }
+    
+    @Override
+    public int getMaxPerRoute(HttpRoute route) {
+        return delegate.getMaxPerRoute(route);
+    }
+    
+    @Override
+    public Set<HttpRoute> getRoutes() {
+        return delegate.getRoutes();
+    }
+    
+    @Override
+    public PoolStats getTotalStats() {
+        return delegate.getTotalStats();
+    }
+    
+    @Override
+    public PoolStats getStats(HttpRoute route) {
+        return delegate.getStats(route);
+    }
+    
+    @Override
+    public void close(CloseMode closeMode) {
+        delegate.close(closeMode);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
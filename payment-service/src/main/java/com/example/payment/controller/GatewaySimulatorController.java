@@ -0,0 +1,36 @@
+package com.example.payment.controller;
+
+import com.example.payment.dto.AuthorizationRequest;
+import com.example.payment.dto.AuthorizationResult;
+import com.example.payment.gateway.GatewaySimulator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP face of the gateway simulator, the target of HttpPaymentGateway in load tests
+ */
+@RestController
+@RequestMapping("/simulator")
+public class GatewaySimulatorController {
+    
+    @Autowired
+    private GatewaySimulator gatewaySimulator;
+    
+    @PostMapping("/authorize")
+    public CompletableFuture<AuthorizationResult> authorize(@RequestBody AuthorizationRequest request) {
+        return gatewaySimulator.authorize(request);
+    }
+    
+    @PostMapping("/authorize/batch")
+    public CompletableFuture<List<AuthorizationResult>> authorizeBatch(@RequestBody List<AuthorizationRequest> requests) {
+        return gatewaySimulator.authorizeBatch(requests);
+    }
+    
+    @PostMapping("/authorizations/{transactionId}/void")
+    public CompletableFuture<Void> voidAuthorization(@PathVariable String transactionId) {
+        return gatewaySimulator.voidAuthorization(transactionId);
+    }
+}
@@ -2,11 +2,16 @@ package com.example.payment.controller;
 
 import com.example.payment.dto.PaymentRequest;
 import com.example.payment.dto.PaymentResponse;
+import com.example.payment.service.IdempotencyService;
 import com.example.payment.service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/")
 public class PaymentController {
@@ -14,15 +19,56 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
     
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    /**
+     * Answered asynchronously: the servlet thread is released while the gateway authorizes the payment
+     */
     @PostMapping("/pay")
-    public ResponseEntity<PaymentResponse> processPayment(@RequestBody PaymentRequest request) {
-        PaymentResponse response = paymentService.processPayment(request);
-        
-        if (response.isSuccess()) {
-            return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<PaymentResponse>> processPayment(
+            @RequestBody PaymentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        CompletableFuture<PaymentResponse> response;
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            response = paymentService.processPayment(request);
         } else {
-            return ResponseEntity.badRequest().body(response);
+            Object previous = idempotencyService.claim("pay", idempotencyKey, request);
+            if (IdempotencyService.MISMATCH.equals(previous)) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(new PaymentResponse(false, "This Idempotency-Key was already used for a different request")));
+            }
+            if (IdempotencyService.IN_FLIGHT.equals(previous)) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new PaymentResponse(false, "A request with this Idempotency-Key is still being processed")));
+            }
+            if (previous instanceof PaymentResponse storedResponse) {
+                response = CompletableFuture.completedFuture(storedResponse);
+            } else {
+                try {
+                    response = paymentService.processPayment(request);
+                } catch (RuntimeException e) {
+                    idempotencyService.release("pay", idempotencyKey);
+                    throw e;
+                }
+                response = response.whenComplete((paymentResponse, failure) -> {
+                    if (failure != null || paymentResponse.isRetryable()) {
+                        idempotencyService.release("pay", idempotencyKey);
+                    } else {
+                        idempotencyService.complete("pay", idempotencyKey, request, paymentResponse);
+                    }
+                });
+            }
         }
+        
+        return response.thenApply(paymentResponse -> paymentResponse.isSuccess()
+            ? ResponseEntity.ok(paymentResponse)
+            : ResponseEntity.badRequest().body(paymentResponse));
+    }
+    
+    @GetMapping("/payments/order/{orderId}")
+    public ResponseEntity<List<PaymentResponse>> getPaymentsByOrder(@PathVariable Long orderId) {
+        return ResponseEntity.ok(paymentService.getPaymentsByOrderId(orderId));
     }
     
     @GetMapping("/health")
@@ -0,0 +1,33 @@
+package com.example.payment.dto;
+
+import java.math.BigDecimal;
+
+public class AuthorizationRequest {
+    private String transactionId;
+    private Long orderId;
+    private BigDecimal amount;
+    private String paymentMethod;
+    
+    // Constructors
+    public AuthorizationRequest() {}
+    
+    public AuthorizationRequest(String transactionId, Long orderId, BigDecimal amount, String paymentMethod) {
+        this.transactionId = transactionId;
+        this.orderId = orderId;
+        this.amount = amount;
+        this.paymentMethod = paymentMethod;
+    }
+    
+    // Getters and Setters
+    public String getTransactionId() { return transactionId; }
+    public void setTransactionId(String transactionId) { this.transactionId = transactionId; }
+    
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+    
+    public BigDecimal getAmount() { return amount; }
+    public void setAmount(BigDecimal amount) { this.amount = amount; }
+    
+    public String getPaymentMethod() { return paymentMethod; }
+    public void setPaymentMethod(String paymentMethod) { this.paymentMethod = paymentMethod; }
+}
@@ -0,0 +1,26 @@
+package com.example.payment.dto;
+
+public class AuthorizationResult {
+    private String transactionId;
+    private boolean approved;
+    private String message;
+    
+    // Constructors
+    public AuthorizationResult() {}
+    
+    public AuthorizationResult(String transactionId, boolean approved, String message) {
+        this.transactionId = transactionId;
+        this.approved = approved;
+        this.message = message;
+    }
+    
+    // Getters and Setters
+    public String getTransactionId() { return transactionId; }
+    public void setTransactionId(String transactionId) { this.transactionId = transactionId; }
+    
+    public boolean isApproved() { return approved; }
+    public void setApproved(boolean approved) { this.approved = approved; }
+    
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
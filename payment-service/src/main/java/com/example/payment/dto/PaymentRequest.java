@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 
 public class PaymentRequest {
     private Long orderId;
+    private String customerName;
     private Long productId;
     private Integer quantity;
     private BigDecimal amount;
@@ -12,8 +13,10 @@ public class PaymentRequest {
     // Constructors
     public PaymentRequest() {}
     
-    public PaymentRequest(Long orderId, Long productId, Integer quantity, BigDecimal amount, String paymentMethod) {
+    public PaymentRequest(Long orderId, String customerName, Long productId, Integer quantity, BigDecimal amount,
+                          String paymentMethod) {
         this.orderId = orderId;
+        this.customerName = customerName;
         this.productId = productId;
         this.quantity = quantity;
         this.amount = amount;
@@ -24,6 +27,9 @@ public class PaymentRequest {
     public Long getOrderId() { return orderId; }
     public void setOrderId(Long orderId) { this.orderId = orderId; }
     
+    public String getCustomerName() { return customerName; }
+    public void setCustomerName(String customerName) { this.customerName = customerName; }
+    
     public Long getProductId() { return productId; }
     public void setProductId(Long productId) { this.productId = productId; }
     
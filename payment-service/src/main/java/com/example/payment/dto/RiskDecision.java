@@ -0,0 +1,26 @@
+package com.example.payment.dto;
+
+public class RiskDecision {
+    private boolean approved;
+    private int score;
+    private String reason;
+    
+    // Constructors
+    public RiskDecision() {}
+    
+    public RiskDecision(boolean approved, int score, String reason) {
+        this.approved = approved;
+        this.score = score;
+        this.reason = reason;
+    }
+    
+    // Getters and Setters
+    public boolean isApproved() { return approved; }
+    public void setApproved(boolean approved) { this.approved = approved; }
+    
+    public int getScore() { return score; }
+    public void setScore(int score) { this.score = score; }
+    
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+}
@@ -0,0 +1,52 @@
+package com.example.payment.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Payment count and amount of one customer or payment method over the last minute, hour and day
+ */
+public class VelocityFeatures {
+    private long countLastMinute;
+    private long countLastHour;
+    private long countLastDay;
+    private BigDecimal amountLastMinute;
+    private BigDecimal amountLastHour;
+    private BigDecimal amountLastDay;
+    
+    // Constructors
+    public VelocityFeatures() {
+        this(new long[3], new long[3]);
+    }
+    
+    /**
+     * @param counts      counts for the minute, hour and day windows
+     * @param amountCents amounts in cents for the same windows
+     */
+    public VelocityFeatures(long[] counts, long[] amountCents) {
+        this.countLastMinute = counts[0];
+        this.countLastHour = counts[1];
+        this.countLastDay = counts[2];
+        this.amountLastMinute = BigDecimal.valueOf(amountCents[0], 2);
+        this.amountLastHour = BigDecimal.valueOf(amountCents[1], 2);
+        this.amountLastDay = BigDecimal.valueOf(amountCents[2], 2);
+    }
+    
+    // Getters and Setters
+    public long getCountLastMinute() { return countLastMinute; }
+    public void setCountLastMinute(long countLastMinute) { this.countLastMinute = countLastMinute; }
+    
+    public long getCountLastHour() { return countLastHour; }
+    public void setCountLastHour(long countLastHour) { this.countLastHour = countLastHour; }
+    
+    public long getCountLastDay() { return countLastDay; }
+    public void setCountLastDay(long countLastDay) { this.countLastDay = countLastDay; }
+    
+    public BigDecimal getAmountLastMinute() { return amountLastMinute; }
+    public void setAmountLastMinute(BigDecimal amountLastMinute) { this.amountLastMinute = amountLastMinute; }
+    
+    public BigDecimal getAmountLastHour() { return amountLastHour; }
+    public void setAmountLastHour(BigDecimal amountLastHour) { this.amountLastHour = amountLastHour; }
+    
+    public BigDecimal getAmountLastDay() { return amountLastDay; }
+    public void setAmountLastDay(BigDecimal amountLastDay) { this.amountLastDay = amountLastDay; }
+}
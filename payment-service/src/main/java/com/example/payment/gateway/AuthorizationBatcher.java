@@ -0,0 +1,164 @@
+package com.example.payment.gateway;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.payment.dto.AuthorizationRequest;
+import com.example.payment.dto.AuthorizationResult;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Micro-batching in front of the gateway
+ * Concurrent authorizations join an open batch, which is sent as one batch call once it holds max-size requests
+ * or max-wait after its first request arrived, whichever comes first. Each caller gets its own future back
+ * immediately and no thread waits for the batch to fill: the batch that fills is sent by the caller that
+ * filled it, and a timer thread sends the ones that time out.
+ */
+@Component
+public class AuthorizationBatcher {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AuthorizationBatcher.class);
+    
+    @Autowired
+    private PaymentGateway paymentGateway;
+    
+    @Value("${payment.gateway.batch.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${payment.gateway.batch.max-size:20}")
+    private int maxSize;
+    
+    @Value("${payment.gateway.batch.max-wait:5ms}")
+    private Duration maxWait;
+    
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "authorization-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<Pending> openBatch = new ArrayList<>();
+    
+    private final DistributionSummary batchSizes;
+    private final Timer batchWait;
+    
+    public AuthorizationBatcher(MeterRegistry meterRegistry) {
+        this.batchSizes = DistributionSummary.builder("payment.gateway.batch.size")
+            .description("Authorizations sent to the gateway in one batch call")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.batchWait = Timer.builder("payment.gateway.batch.wait")
+            .description("Time an authorization waited in an open batch before it was sent")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public CompletableFuture<AuthorizationResult> submit(AuthorizationRequest request) {
+        Pending pending = new Pending(request, System.nanoTime());
+        List<Pending> full = null;
+        lock.lock();
+        try {
+            openBatch.add(pending);
+            if (openBatch.size() >= maxSize) {
+                full = openBatch;
+                openBatch = new ArrayList<>(maxSize);
+            } else if (openBatch.size() == 1) {
+                List<Pending> opened = openBatch;
+                timer.schedule(() -> sendIfStillOpen(opened), maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        
+        if (full != null) {
+            send(full);
+        }
+        return pending.result;
+    }
+    
+    /**
+     * Timer path: the batch may have filled up and been sent in the meantime, then there is nothing to do
+     */
+    private void sendIfStillOpen(List<Pending> batch) {
+        lock.lock();
+        try {
+            if (openBatch != batch) {
+                return;
+            }
+            openBatch = new ArrayList<>(maxSize);
+        } finally {
+            lock.unlock();
+        }
+        send(batch);
+    }
+    
+    private void send(List<Pending> batch) {
+        long now = System.nanoTime();
+        batchSizes.record(batch.size());
+        List<AuthorizationRequest> requests = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            batchWait.record(now - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+            requests.add(pending.request);
+        }
+        
+        CompletableFuture<List<AuthorizationResult>> results;
+        try {
+            results = paymentGateway.authorizeBatch(requests);
+        } catch (RuntimeException e) {
+            results = CompletableFuture.failedFuture(e);
+        }
+        results.whenComplete((authorizations, failure) -> {
+            if (failure == null && authorizations.size() != batch.size()) {
+                failure = new IllegalStateException("Gateway answered " + authorizations.size()
+                                                    + " results for a batch of " + batch.size());
+            }
+            if (failure != null) {
+                logger.error("Batch authorization of {} payments failed - {}", batch.size(), failure.getMessage());
+                for (Pending pending : batch) {
+                    pending.result.completeExceptionally(failure);
+                }
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(authorizations.get(i));
+            }
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+    
+    private static final class Pending {
+        private final AuthorizationRequest request;
+        private final long enqueuedNanos;
+        private final CompletableFuture<AuthorizationResult> result = new CompletableFuture<>();
+        
+        Pending(AuthorizationRequest request, long enqueuedNanos) {
+            this.request = request;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.payment.gateway;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.payment.dto.AuthorizationRequest;
+import com.example.payment.dto.AuthorizationResult;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Local stand-in for a payment gateway, for load tests with realistic gateway latency offline
+ * Each authorization completes after a latency drawn from the configured distribution - fixed or lognormal,
+ * optionally with rare long-tail spikes on top - and is declined or fails at the configured rates.
+ * Completion is scheduled on one timer thread, so waiting for the simulated gateway occupies no thread at all.
+ */
+@Component
+public class GatewaySimulator {
+    
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gateway-simulator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // fixed | lognormal
+    @Value("${payment.gateway.simulator.latency.distribution:lognormal}")
+    private String distribution;
+    
+    // Latency of the fixed distribution, median of the lognormal one
+    @Value("${payment.gateway.simulator.latency.median:100ms}")
+    private Duration medianLatency;
+    
+    // Shape of the lognormal distribution; 0.5 puts p99 at about 3.2x the median
+    @Value("${payment.gateway.simulator.latency.sigma:0.5}")
+    private double sigma;
+    
+    @Value("${payment.gateway.simulator.latency.spike-probability:0.0}")
+    private double spikeProbability;
+    
+    @Value("${payment.gateway.simulator.latency.spike:2s}")
+    private Duration spikeLatency;
+    
+    // Extra latency per request in a batch call
+    @Value("${payment.gateway.simulator.latency.batch-item:1ms}")
+    private Duration batchItemLatency;
+    
+    @Value("${payment.gateway.simulator.decline-rate:0.05}")
+    private double declineRate;
+    
+    // Gateway errors (timeouts, 5xx), surfaced as a failed future rather than a decline
+    @Value("${payment.gateway.simulator.error-rate:0.0}")
+    private double errorRate;
+    
+    public CompletableFuture<AuthorizationResult> authorize(AuthorizationRequest request) {
+        CompletableFuture<AuthorizationResult> result = new CompletableFuture<>();
+        timer.schedule(() -> complete(result, request), sampleLatencyMicros(), TimeUnit.MICROSECONDS);
+        return result;
+    }
+    
+    /**
+     * One batch call takes one sampled latency plus batch-item-latency per request, and fails as a whole
+     * at the error rate; each request in it is declined independently
+     */
+    public CompletableFuture<List<AuthorizationResult>> authorizeBatch(List<AuthorizationRequest> requests) {
+        CompletableFuture<List<AuthorizationResult>> result = new CompletableFuture<>();
+        long latencyMicros = sampleLatencyMicros() + requests.size() * batchItemLatency.toNanos() / 1000;
+        timer.schedule(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < errorRate) {
+                result.completeExceptionally(new IllegalStateException("Simulated gateway error"));
+                return;
+            }
+            List<AuthorizationResult> authorizations = new ArrayList<>(requests.size());
+            for (AuthorizationRequest request : requests) {
+                authorizations.add(decide(request, random));
+            }
+            result.complete(authorizations);
+        }, latencyMicros, TimeUnit.MICROSECONDS);
+        return result;
+    }
+    
+    /**
+     * Voids take the same latency as authorizations and fail at the same error rate, but are never declined
+     */
+    public CompletableFuture<Void> voidAuthorization(String transactionId) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        timer.schedule(() -> {
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                result.completeExceptionally(new IllegalStateException("Simulated gateway error voiding " + transactionId));
+            } else {
+                result.complete(null);
+            }
+        }, sampleLatencyMicros(), TimeUnit.MICROSECONDS);
+        return result;
+    }
+    
+    private void complete(CompletableFuture<AuthorizationResult> result, AuthorizationRequest request) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < errorRate) {
+            result.completeExceptionally(new IllegalStateException("Simulated gateway error"));
+        } else {
+            result.complete(decide(request, random));
+        }
+    }
+    
+    private AuthorizationResult decide(AuthorizationRequest request, ThreadLocalRandom random) {
+        if (random.nextDouble() < declineRate) {
+            return new AuthorizationResult(request.getTransactionId(), false, "Declined by issuer");
+        }
+        return new AuthorizationResult(request.getTransactionId(), true, "Approved");
+    }
+    
+    private long sampleLatencyMicros() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double micros = medianLatency.toNanos() / 1000.0;
+        if ("lognormal".equalsIgnoreCase(distribution)) {
+            // exp(N(ln median, sigma^2)) has the configured median
+            micros *= Math.exp(sigma * random.nextGaussian());
+        }
+        if (spikeProbability > 0 && random.nextDouble() < spikeProbability) {
+            micros += spikeLatency.toNanos() / 1000.0;
+        }
+        return Math.max(0, Math.round(micros));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.payment.gateway;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import com.example.payment.dto.AuthorizationRequest;
+import com.example.payment.dto.AuthorizationResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Gateway reached over HTTP with the non-blocking JDK client
+ * Point payment.gateway.url at a real gateway adapter, or at this service's /simulator endpoints to put
+ * the network hop into a load test.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.gateway.type", havingValue = "http")
+public class HttpPaymentGateway implements PaymentGateway {
+    
+    @Autowired
+    private HttpClient httpClient;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${payment.gateway.url:http://localhost:8080/simulator}")
+    private String gatewayUrl;
+    
+    @Value("${payment.gateway.timeout:3s}")
+    private Duration timeout;
+    
+    @Override
+    public CompletableFuture<AuthorizationResult> authorize(AuthorizationRequest request) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(gatewayUrl + "/authorize"))
+                .timeout(timeout)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)))
+                .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> {
+                if (response.statusCode() >= 300) {
+                    throw new IllegalStateException("Gateway answered HTTP " + response.statusCode());
+                }
+                try {
+                    return objectMapper.readValue(response.body(), AuthorizationResult.class);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unreadable gateway response", e);
+                }
+            });
+    }
+    
+    @Override
+    public CompletableFuture<List<AuthorizationResult>> authorizeBatch(List<AuthorizationRequest> requests) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(gatewayUrl + "/authorize/batch"))
+                .timeout(timeout)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(requests)))
+                .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> {
+                if (response.statusCode() >= 300) {
+                    throw new IllegalStateException("Gateway answered HTTP " + response.statusCode());
+                }
+                try {
+                    return Arrays.asList(objectMapper.readValue(response.body(), AuthorizationResult[].class));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unreadable gateway response", e);
+                }
+            });
+    }
+    
+    @Override
+    public CompletableFuture<Void> voidAuthorization(String transactionId) {
+        HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(gatewayUrl + "/authorizations/" + transactionId + "/void"))
+            .timeout(timeout)
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+        
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+            .thenAccept(response -> {
+                if (response.statusCode() >= 300) {
+                    throw new IllegalStateException("Gateway answered HTTP " + response.statusCode() + " to void " + transactionId);
+                }
+            });
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.payment.gateway;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.example.payment.dto.AuthorizationRequest;
+import com.example.payment.dto.AuthorizationResult;
+
+/**
+ * Card network / PSP the payment is authorized with
+ * Implementations must not block the caller: the future completes when the gateway answers, and fails
+ * when the gateway could not be reached or timed out. A decline is a normal result, not a failure.
+ */
+public interface PaymentGateway {
+    
+    CompletableFuture<AuthorizationResult> authorize(AuthorizationRequest request);
+    
+    /**
+     * Authorizes several payments with one gateway call
+     * @return one result per request, in the order of the requests
+     */
+    CompletableFuture<List<AuthorizationResult>> authorizeBatch(List<AuthorizationRequest> requests);
+    
+    /**
+     * Releases an approved authorization that will not be captured, e.g. because the stock could not be reserved
+     */
+    CompletableFuture<Void> voidAuthorization(String transactionId);
+}
@@ -0,0 +1,37 @@
+package com.example.payment.gateway;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.payment.dto.AuthorizationRequest;
+import com.example.payment.dto.AuthorizationResult;
+
+/**
+ * In-process gateway backed by the simulator, the default when payment.gateway.type is not set
+ */
+@Component
+@ConditionalOnProperty(name = "payment.gateway.type", havingValue = "simulated", matchIfMissing = true)
+public class SimulatedPaymentGateway implements PaymentGateway {
+    
+    @Autowired
+    private GatewaySimulator gatewaySimulator;
+    
+    @Override
+    public CompletableFuture<AuthorizationResult> authorize(AuthorizationRequest request) {
+        return gatewaySimulator.authorize(request);
+    }
+    
+    @Override
+    public CompletableFuture<List<AuthorizationResult>> authorizeBatch(List<AuthorizationRequest> requests) {
+        return gatewaySimulator.authorizeBatch(requests);
+    }
+    
+    @Override
+    public CompletableFuture<Void> voidAuthorization(String transactionId) {
+        return gatewaySimulator.voidAuthorization(transactionId);
+    }
+}
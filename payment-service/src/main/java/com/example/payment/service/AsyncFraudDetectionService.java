@@ -1,59 +1,60 @@
 package com.example.payment.service;
 
+import java.math.BigDecimal;
 import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import com.example.payment.dto.PaymentRequest;
+import com.example.payment.dto.VelocityFeatures;
 
 @Service
 public class AsyncFraudDetectionService {
-
+    
     private static final Logger logger = LoggerFactory.getLogger(AsyncFraudDetectionService.class);
     
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
     
+    @Autowired
+    private VelocityFeatureStore velocityFeatureStore;
+    
+    @Value("${fraud.velocity.max-customer-payments-per-minute:5}")
+    private long maxCustomerPaymentsPerMinute;
+    
+    @Value("${fraud.velocity.max-customer-amount-per-day:50000}")
+    private BigDecimal maxCustomerAmountPerDay;
+    
     /**
      * Async fraud detection check
-     * Demonstrates async processing with return values
+     * Flags large amounts and customers paying too often or too much, from the in-memory velocity features
      */
     @Async("taskExecutor")
     public CompletableFuture<Boolean> performFraudCheck(PaymentRequest request) {
-        try {
-            // Simulate fraud detection processing time
-            Thread.sleep(800);
-            
-            // Check customer payment history - Redis operations traced automatically
-            String customerKey = "fraud:history:" + request.getOrderId();
-            String paymentHistory = (String) redisTemplate.opsForValue().get(customerKey);
-            
-            // Simple fraud detection logic
-            boolean isFraudulent = request.getAmount().doubleValue() > 10000.0; // Flag large amounts
-            
-            // Cache fraud check result
-            String resultKey = "fraud:check:" + request.getOrderId();
-            String result = isFraudulent ? "FLAGGED" : "APPROVED";
-            redisTemplate.opsForValue().set(resultKey, result, Duration.ofHours(24));
-            
-            // Update customer history
-            redisTemplate.opsForValue().increment(customerKey + ":count", 1);
-            redisTemplate.expire(customerKey + ":count", Duration.ofDays(30));
-            
-            logger.info("🔍 Fraud check completed for order " + request.getOrderId() + ": " + result);
-            
-            return CompletableFuture.completedFuture(!isFraudulent);
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Fraud detection failed", e);
-        }
+        VelocityFeatures customer = velocityFeatureStore.customerFeatures(request.getCustomerName());
+        
+        // Simple fraud detection logic
+        boolean isFraudulent = request.getAmount().doubleValue() > 10000.0 // Flag large amounts
+            || customer.getCountLastMinute() > maxCustomerPaymentsPerMinute
+            || customer.getAmountLastDay().compareTo(maxCustomerAmountPerDay) > 0;
+        
+        // Cache fraud check result
+        String resultKey = "fraud:check:" + request.getOrderId();
+        String result = isFraudulent ? "FLAGGED" : "APPROVED";
+        redisTemplate.opsForValue().set(resultKey, result, Duration.ofHours(24));
+        
+        logger.info("🔍 Fraud check completed for order {}: {} (customer payments 1m/1h/1d: {}/{}/{}, amount 1d: {})",
+                   request.getOrderId(), result, customer.getCountLastMinute(), customer.getCountLastHour(),
+                   customer.getCountLastDay(), customer.getAmountLastDay());
+        
+        return CompletableFuture.completedFuture(!isFraudulent);
     }
     
     /**
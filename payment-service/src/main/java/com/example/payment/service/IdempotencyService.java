@@ -0,0 +1,127 @@
+package com.example.payment.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Redis-backed Idempotency-Key store
+ * The first request for a key takes an in-flight lock (SET NX with a short TTL) and later replaces it with its
+ * final response, which duplicates receive instead of running the request again. A SHA-256 of the request body is
+ * written next to the key by the same script that takes the lock or stores the response, and lives as long as the
+ * response, so reusing a key for a different request is refused.
+ */
+@Service
+public class IdempotencyService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    
+    public static final String HEADER = "Idempotency-Key";
+    public static final String IN_FLIGHT = "IN_FLIGHT";
+    public static final String MISMATCH = "MISMATCH";
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${idempotency.in-flight-ttl:30s}")
+    private Duration inFlightTtl;
+    
+    @Value("${idempotency.response-ttl:24h}")
+    private Duration responseTtl;
+    
+    private final DefaultRedisScript<Long> claimScript = script("scripts/idempotency-claim.lua");
+    private final DefaultRedisScript<Long> completeScript = script("scripts/idempotency-complete.lua");
+    
+    /**
+     * @return null when the caller now owns the key, MISMATCH when the key was used for a different request body,
+     *         IN_FLIGHT while another request holds it, otherwise the stored response
+     */
+    public Object claim(String scope, String idempotencyKey, Object request) {
+        String key = redisKey(scope, idempotencyKey);
+        String fingerprint = fingerprint(request);
+        if (acquire(key, fingerprint)) {
+            return null;
+        }
+        
+        Object storedFingerprint = redisTemplate.opsForValue().get(fingerprintKey(key));
+        if (storedFingerprint != null && !fingerprint.equals(storedFingerprint)) {
+            logger.warn("{} key: {} reused with a different request body", scope, idempotencyKey);
+            return MISMATCH;
+        }
+        
+        Object existing = redisTemplate.opsForValue().get(key);
+        if (existing == null) {
+            // Lock expired or released between the two calls - try once more
+            return acquire(key, fingerprint) ? null : IN_FLIGHT;
+        }
+        logger.info("Duplicate request for {} key: {} ({})", scope, idempotencyKey,
+                   IN_FLIGHT.equals(existing) ? "in flight" : "replaying stored response");
+        return existing;
+    }
+    
+    /**
+     * Stores a terminal response; retryable failures go through release instead
+     */
+    public void complete(String scope, String idempotencyKey, Object request, Object response) {
+        String key = redisKey(scope, idempotencyKey);
+        redisTemplate.execute(completeScript, List.of(key, fingerprintKey(key)),
+            response, fingerprint(request), responseTtl.toMillis());
+    }
+    
+    /**
+     * Drops the lock after a failure that may pass on a retry, so the same key can run the request again
+     */
+    public void release(String scope, String idempotencyKey) {
+        String key = redisKey(scope, idempotencyKey);
+        redisTemplate.delete(List.of(key, fingerprintKey(key)));
+    }
+    
+    // The fingerprint outlives the lock, so a slow request is still protected once its lock has expired
+    private boolean acquire(String key, String fingerprint) {
+        Long acquired = redisTemplate.execute(claimScript, List.of(key, fingerprintKey(key)),
+            IN_FLIGHT, fingerprint, inFlightTtl.toMillis(), responseTtl.toMillis());
+        return acquired != null && acquired == 1;
+    }
+    
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint request for idempotency", e);
+        }
+    }
+    
+    private String fingerprintKey(String key) {
+        return key + ":fingerprint";
+    }
+    
+    // Hash tag keeps the key and its fingerprint in one cluster slot for the scripts
+    private String redisKey(String scope, String idempotencyKey) {
+        return "idempotency:{" + scope + ":" + idempotencyKey + "}";
+    }
+    
+    private static DefaultRedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.payment.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.payment.dto.PaymentRequest;
+import com.example.payment.dto.RiskDecision;
+import com.example.payment.dto.VelocityFeatures;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Risk scoring on the payment's critical path, before the gateway is asked to authorize
+ * Scoring reads only in-memory features (amount, payment method, velocity) and runs on its own executor,
+ * so a slow score - a GC pause, a saturated pool - never holds the payment longer than the budget: when the
+ * budget runs out the payment continues with the fallback decision and the late score is discarded. The
+ * budget timer only fires the fallback; the payment continues from it on the completion executor.
+ */
+@Component
+public class InlineRiskScorer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InlineRiskScorer.class);
+    
+    @Autowired
+    private VelocityFeatureStore velocityFeatureStore;
+    
+    @Autowired
+    @Qualifier("riskScoringExecutor")
+    private Executor riskScoringExecutor;
+    
+    @Autowired
+    @Qualifier("paymentCompletionExecutor")
+    private Executor paymentCompletionExecutor;
+    
+    @Value("${payment.risk-scoring.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${payment.risk-scoring.budget:5ms}")
+    private Duration budget;
+    
+    // Payments scoring at or above this are declined without calling the gateway
+    @Value("${payment.risk-scoring.decline-threshold:70}")
+    private int declineThreshold;
+    
+    // approve | decline - the decision when scoring misses its budget or fails
+    @Value("${payment.risk-scoring.fallback:approve}")
+    private String fallback;
+    
+    @Value("${fraud.velocity.max-customer-payments-per-minute:5}")
+    private long maxCustomerPaymentsPerMinute;
+    
+    @Value("${fraud.velocity.max-customer-amount-per-day:50000}")
+    private BigDecimal maxCustomerAmountPerDay;
+    
+    private final ScheduledThreadPoolExecutor budgetTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "risk-scoring-budget");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final MeterRegistry meterRegistry;
+    private final Counter budgetOverruns;
+    
+    public InlineRiskScorer(MeterRegistry meterRegistry) {
+        // Most scores beat the budget, so their cancelled timers should not linger in the queue
+        this.budgetTimer.setRemoveOnCancelPolicy(true);
+        this.meterRegistry = meterRegistry;
+        this.budgetOverruns = Counter.builder("payment.risk.scoring.budget.exceeded")
+            .description("Payments that went ahead with the fallback decision because scoring missed its budget")
+            .register(meterRegistry);
+    }
+    
+    public CompletableFuture<RiskDecision> score(PaymentRequest request) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(new RiskDecision(true, 0, "Risk scoring disabled"));
+        }
+        
+        long startNanos = System.nanoTime();
+        CompletableFuture<RiskDecision> decision = new CompletableFuture<>();
+        try {
+            CompletableFuture.supplyAsync(() -> evaluate(request), riskScoringExecutor)
+                .whenComplete((scored, failure) -> {
+                    if (failure != null) {
+                        logger.warn("Risk scoring failed for order: {} - {}", request.getOrderId(), failure.getMessage());
+                        complete(decision, fallbackDecision("Risk scoring failed"), "fallback", startNanos);
+                    } else {
+                        complete(decision, scored, "scored", startNanos);
+                    }
+                });
+        } catch (RuntimeException e) {
+            // Executor saturated - do not queue behind it
+            logger.warn("Risk scoring rejected for order: {} - {}", request.getOrderId(), e.getMessage());
+            complete(decision, fallbackDecision("Risk scoring unavailable"), "fallback", startNanos);
+        }
+        
+        if (decision.isDone()) {
+            // Scored, failed or rejected already - no budget left to enforce
+            return decision;
+        }
+        ScheduledFuture<?> budgetTimeout = budgetTimer.schedule(
+            () -> exceedBudget(decision, request, startNanos), budget.toNanos(), TimeUnit.NANOSECONDS);
+        decision.whenComplete((value, failure) -> budgetTimeout.cancel(false));
+        return decision;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        budgetTimer.shutdownNow();
+    }
+    
+    /**
+     * Completes an overrun decision with the fallback on the completion executor, so the rest of the payment
+     * never runs on the timer thread; only a saturated executor falls back to completing it here
+     */
+    private void exceedBudget(CompletableFuture<RiskDecision> decision, PaymentRequest request, long startNanos) {
+        Runnable fallBack = () -> {
+            if (complete(decision, fallbackDecision("Risk scoring exceeded its budget"), "budget_exceeded", startNanos)) {
+                budgetOverruns.increment();
+                logger.warn("Risk scoring for order: {} exceeded its {} budget, continuing with: {}",
+                           request.getOrderId(), budget, fallback);
+            }
+        };
+        try {
+            paymentCompletionExecutor.execute(fallBack);
+        } catch (RejectedExecutionException e) {
+            fallBack.run();
+        }
+    }
+    
+    /**
+     * Completes the decision once - whichever of score and budget timer comes first - and records how long
+     * the payment waited for it
+     */
+    private boolean complete(CompletableFuture<RiskDecision> decision, RiskDecision value, String outcome, long startNanos) {
+        if (!decision.complete(value)) {
+            return false;
+        }
+        Timer.builder("payment.risk.scoring")
+            .description("Time a payment waited for its inline risk decision")
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        return true;
+    }
+    
+    private RiskDecision evaluate(PaymentRequest request) {
+        VelocityFeatures customer = velocityFeatureStore.customerFeatures(request.getCustomerName());
+        int score = 0;
+        
+        // Amount risk
+        if (request.getAmount() != null && request.getAmount().doubleValue() > 10000) {
+            score += 50;
+        } else if (request.getAmount() != null && request.getAmount().doubleValue() > 5000) {
+            score += 30;
+        }
+        
+        // Payment method risk
+        score += "CREDIT_CARD".equals(request.getPaymentMethod()) ? 10 : 20;
+        
+        // Customer velocity
+        if (customer.getCountLastMinute() > maxCustomerPaymentsPerMinute) {
+            score += 40;
+        }
+        if (customer.getAmountLastDay().compareTo(maxCustomerAmountPerDay) > 0) {
+            score += 40;
+        }
+        
+        boolean approved = score < declineThreshold;
+        logger.debug("Inline risk score for order: {} is {} ({})", request.getOrderId(), score,
+                    approved ? "approved" : "declined");
+        return new RiskDecision(approved, score, approved ? "Risk score " + score : "Declined by risk scoring (score " + score + ")");
+    }
+    
+    private RiskDecision fallbackDecision(String reason) {
+        boolean approved = !"decline".equalsIgnoreCase(fallback);
+        return new RiskDecision(approved, -1, reason);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.payment.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import com.example.payment.dto.ReservationRequest;
+import com.example.payment.dto.ReservationResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Non-blocking client for inventory-service reservations, used when the reservation runs alongside the gateway call
+ */
+@Component
+public class InventoryClient {
+    
+    @Autowired
+    private HttpClient httpClient;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${inventory.service.url}")
+    private String inventoryServiceUrl;
+    
+    @Value("${inter-service.http.response-timeout:5s}")
+    private Duration requestTimeout;
+    
+    /**
+     * Reserves stock without parking the calling thread.
+     * inventory-service answers a failed reservation with 400 and a ReservationResponse body, so the body is
+     * decoded for any status that carries one.
+     */
+    public CompletableFuture<ReservationResponse> reserveAsync(ReservationRequest reservationRequest) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(inventoryServiceUrl + "/reserve"))
+                .timeout(requestTimeout)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(reservationRequest)))
+                .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> {
+                if (response.body() == null || response.body().length == 0) {
+                    return new ReservationResponse(false, "Empty reservation response (HTTP " + response.statusCode() + ")");
+                }
+                try {
+                    return objectMapper.readValue(response.body(), ReservationResponse.class);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unreadable reservation response (HTTP " + response.statusCode() + ")", e);
+                }
+            });
+    }
+}
@@ -1,27 +1,39 @@
 package com.example.payment.service;
 
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import com.example.payment.dto.AuthorizationRequest;
+import com.example.payment.dto.AuthorizationResult;
 import com.example.payment.dto.PaymentRequest;
 import com.example.payment.dto.PaymentResponse;
 import com.example.payment.dto.ReservationRequest;
 import com.example.payment.dto.ReservationResponse;
 import com.example.payment.entity.Payment;
+import com.example.payment.gateway.AuthorizationBatcher;
+import com.example.payment.gateway.PaymentGateway;
 import com.example.payment.repository.PaymentRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 @Service
 public class PaymentService {
-
+    
     private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
     
     @Autowired
@@ -30,19 +42,65 @@ public class PaymentService {
     @Autowired
     private RestTemplate restTemplate;
     
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
     @Autowired
     private AsyncFraudDetectionService asyncFraudDetectionService;
     
+    @Autowired
+    private VelocityFeatureStore velocityFeatureStore;
+    
+    @Autowired
+    private InlineRiskScorer inlineRiskScorer;
+    
+    @Autowired
+    private PaymentGateway paymentGateway;
+    
+    @Autowired
+    private AuthorizationBatcher authorizationBatcher;
+    
+    @Autowired
+    private InventoryClient inventoryClient;
+    
+    @Autowired
+    @Qualifier("paymentCompletionExecutor")
+    private Executor paymentCompletionExecutor;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
     @Value("${inventory.service.url}")
     private String inventoryServiceUrl;
     
-    @Transactional
-    public PaymentResponse processPayment(PaymentRequest request) {
+    // Reserve inventory and authorize at the same time instead of one after the other
+    @Value("${payment.processing.parallel:false}")
+    private boolean parallelProcessing;
+    
+    /**
+     * Runs the payment as short local transactions around the remote calls:
+     * PENDING row -> reserve inventory (a hold) -> gateway -> commit hold -> COMPLETED,
+     * or FAILED with the hold released.
+     * The gateway call is asynchronous; the stages after it run on the completion executor, so neither
+     * the request thread nor a DB connection is held while the gateway answers.
+     */
+    public CompletableFuture<PaymentResponse> processPayment(PaymentRequest request) {
         logger.info("Starting payment processing for order: {}, productId: {}, amount: {}, paymentMethod: {}", 
                    request.getOrderId(), request.getProductId(), request.getAmount(), request.getPaymentMethod());
+        // Velocity counts attempts, declined or not
+        velocityFeatureStore.record(request);
+        if (parallelProcessing) {
+            return processPaymentInParallel(request);
+        }
         
+        Payment payment = null;
         try {
-            // First, try to reserve inventory
+            // Record the attempt before any remote call so it is never lost
+            payment = transactionTemplate.execute(status -> paymentRepository.save(newPayment(request)));
+            logger.debug("Created PENDING payment record with transaction ID: {} for order: {}",
+                        payment.getTransactionId(), request.getOrderId());
+            
+            // Reserve inventory - no transaction or connection is held during the call
             ReservationRequest reservationRequest = new ReservationRequest(
                 request.getProductId(), 
                 request.getQuantity()
@@ -59,76 +117,311 @@ public class PaymentService {
             );
             
             if (reservationResponse.getBody() == null || !reservationResponse.getBody().isSuccess()) {
-                logger.warn("Inventory reservation failed for order: {} - {}", 
-                           request.getOrderId(), 
-                           reservationResponse.getBody() != null ? reservationResponse.getBody().getMessage() : "Unknown error");
-                return new PaymentResponse(false, "Failed to reserve inventory: " + 
-                    (reservationResponse.getBody() != null ? reservationResponse.getBody().getMessage() : "Unknown error"));
+                String reason = reservationResponse.getBody() != null ? reservationResponse.getBody().getMessage() : "Unknown error";
+                logger.warn("Inventory reservation failed for order: {} - {}", request.getOrderId(), reason);
+                transitionStatus(payment, "FAILED");
+                return CompletableFuture.completedFuture(new PaymentResponse(false, "Failed to reserve inventory: " + reason));
             }
+            Long holdId = reservationResponse.getBody().getHoldId();
+            logger.info("Inventory reservation successful for order: {} - hold: {}", request.getOrderId(), holdId);
             
-            logger.info("Inventory reservation successful for order: {}", request.getOrderId());
-            
-            // Create payment record
-            Payment payment = new Payment(request.getOrderId(), request.getAmount(), request.getPaymentMethod());
-            payment.setTransactionId(UUID.randomUUID().toString());
-            logger.debug("Created payment record with transaction ID: {} for order: {}", 
-                        payment.getTransactionId(), request.getOrderId());
+            Payment pendingPayment = payment;
+            return authorize(request, payment)
+                .handleAsync((result, failure) -> settle(request, pendingPayment, holdId, result, failure),
+                             paymentCompletionExecutor);
             
-            // Simulate payment processing
-            logger.info("Processing payment for order: {} with transaction ID: {} and amount: {}", 
+        } catch (Exception e) {
+            logger.error("Payment processing failed with exception for order: {} - {}", 
+                        request.getOrderId(), e.getMessage(), e);
+            compensate(request, payment, false, null);
+            // A 4xx from inventory-service is its answer to this request, anything else may pass on a retry
+            return CompletableFuture.completedFuture(failure("Payment processing error: " + e.getMessage(),
+                                                             !(e instanceof HttpClientErrorException)));
+        }
+    }
+    
+    /**
+     * Parallel mode: the reservation and the authorization run at the same time, so a payment takes the slower
+     * of the two hops instead of their sum. When only one side succeeds it is undone - the hold released
+     * or the authorization voided.
+     */
+    private CompletableFuture<PaymentResponse> processPaymentInParallel(PaymentRequest request) {
+        Payment payment;
+        try {
+            // Record the attempt before any remote call so it is never lost
+            payment = transactionTemplate.execute(status -> paymentRepository.save(newPayment(request)));
+        } catch (Exception e) {
+            logger.error("Failed to record payment for order: {} - {}", request.getOrderId(), e.getMessage(), e);
+            return CompletableFuture.completedFuture(failure("Payment processing error: " + e.getMessage(), true));
+        }
+        
+        logger.info("Reserving inventory and authorizing payment in parallel for order: {} (productId: {}, quantity: {})",
+                   request.getOrderId(), request.getProductId(), request.getQuantity());
+        CompletableFuture<ReservationResponse> reservation = inventoryClient.reserveAsync(
+            new ReservationRequest(request.getProductId(), request.getQuantity()));
+        CompletableFuture<AuthorizationResult> authorization = authorize(request, payment);
+        
+        return CompletableFuture.allOf(reservation, authorization)
+            .handleAsync((ignored, failure) -> joinParallel(request, payment, reservation, authorization),
+                         paymentCompletionExecutor);
+    }
+    
+    private PaymentResponse joinParallel(PaymentRequest request, Payment payment,
+                                         CompletableFuture<ReservationResponse> reservation,
+                                         CompletableFuture<AuthorizationResult> authorization) {
+        boolean reservationErrored = reservation.isCompletedExceptionally();
+        ReservationResponse reservationResponse = reservation
+            .exceptionally(failure -> new ReservationResponse(false, unwrap(failure).getMessage()))
+            .join();
+        Throwable authorizationFailure = authorization.handle((result, failure) -> failure).join();
+        AuthorizationResult result = authorizationFailure == null ? authorization.join() : null;
+        
+        if (reservationResponse.isSuccess()) {
+            Long holdId = reservationResponse.getHoldId();
+            logger.info("Inventory reservation successful for order: {} - hold: {}", request.getOrderId(), holdId);
+            // From here on as in serial mode: commit the hold when approved, release it otherwise
+            return settle(request, payment, holdId, result, authorizationFailure);
+        }
+        
+        logger.warn("Inventory reservation failed for order: {} - {}", request.getOrderId(), reservationResponse.getMessage());
+        // A failed authorization may still have been approved by the gateway
+        if (authorizationFailure != null || result.isApproved()) {
+            voidAuthorization(request, payment);
+        }
+        try {
+            transitionStatus(payment, "FAILED");
+        } catch (Exception e) {
+            logger.error("Failed to mark payment {} as FAILED - {}", payment.getTransactionId(), e.getMessage());
+        }
+        return failure("Failed to reserve inventory: " + reservationResponse.getMessage(), reservationErrored);
+    }
+    
+    public List<PaymentResponse> getPaymentsByOrderId(Long orderId) {
+        return paymentRepository.findByOrderId(orderId).stream()
+            .map(payment -> new PaymentResponse(
+                "COMPLETED".equals(payment.getStatus()),
+                "Payment " + payment.getStatus(),
+                payment.getId(),
+                payment.getTransactionId(),
+                payment.getAmount(),
+                payment.getStatus()
+            ))
+            .toList();
+    }
+    
+    private Payment newPayment(PaymentRequest request) {
+        Payment payment = new Payment(request.getOrderId(), request.getAmount(), request.getPaymentMethod());
+        payment.setTransactionId(UUID.randomUUID().toString());
+        payment.setStatus("PENDING");
+        return payment;
+    }
+    
+    private Payment transitionStatus(Payment payment, String status) {
+        logger.debug("Payment {} for order: {} moving {} -> {}",
+                    payment.getTransactionId(), payment.getOrderId(), payment.getStatus(), status);
+        payment.setStatus(status);
+        return transactionTemplate.execute(tx -> paymentRepository.save(payment));
+    }
+    
+    /**
+     * Best-effort undo after an unexpected error: give back the reserved stock and close the payment as FAILED
+     */
+    private void compensate(PaymentRequest request, Payment payment, boolean inventoryReserved, Long holdId) {
+        if (inventoryReserved) {
+            releaseInventory(request, holdId);
+        }
+        if (payment != null && payment.getId() != null) {
+            try {
+                transitionStatus(payment, "FAILED");
+            } catch (Exception e) {
+                logger.error("Failed to mark payment {} as FAILED - {}", payment.getTransactionId(), e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * @return null once the hold is committed, otherwise inventory-service's reason for refusing it
+     */
+    private String commitHold(PaymentRequest request, Long holdId) {
+        if (holdId == null) {
+            return null;
+        }
+        ReservationResponse response;
+        try {
+            response = restTemplate.postForEntity(
+                inventoryServiceUrl + "/holds/{holdId}/commit", null, ReservationResponse.class, holdId).getBody();
+        } catch (HttpClientErrorException e) {
+            // A refused commit comes back as 400 with the reason in the body
+            response = e.getResponseBodyAs(ReservationResponse.class);
+        }
+        if (response == null || !response.isSuccess()) {
+            return response != null ? response.getMessage() : "No response";
+        }
+        logger.info("Committed inventory hold {} for order: {}", holdId, request.getOrderId());
+        return null;
+    }
+    
+    private void releaseInventory(PaymentRequest request, Long holdId) {
+        try {
+            if (holdId != null) {
+                restTemplate.postForEntity(
+                    inventoryServiceUrl + "/holds/{holdId}/release", null, ReservationResponse.class, holdId);
+            } else {
+                restTemplate.postForEntity(
+                    inventoryServiceUrl + "/release",
+                    new ReservationRequest(request.getProductId(), request.getQuantity()),
+                    ReservationResponse.class
+                );
+            }
+            logger.info("Released inventory reservation for order: {}", request.getOrderId());
+        } catch (Exception e) {
+            logger.error("Failed to release inventory for order: {} (productId: {}, quantity: {}) - {}",
+                        request.getOrderId(), request.getProductId(), request.getQuantity(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Scores the payment inline, then sends the authorization to the gateway unless the score declines it
+     */
+    private CompletableFuture<AuthorizationResult> authorize(PaymentRequest request, Payment payment) {
+        AuthorizationRequest authorizationRequest = new AuthorizationRequest(
+            payment.getTransactionId(), request.getOrderId(), request.getAmount(), request.getPaymentMethod());
+        
+        return inlineRiskScorer.score(request).thenCompose(decision -> {
+            if (!decision.isApproved()) {
+                logger.warn("Payment for order: {} with transaction ID: {} declined before authorization - {}",
+                           request.getOrderId(), payment.getTransactionId(), decision.getReason());
+                return CompletableFuture.completedFuture(
+                    new AuthorizationResult(payment.getTransactionId(), false, decision.getReason()));
+            }
+            logger.info("Authorizing payment for order: {} with transaction ID: {} and amount: {}",
                        request.getOrderId(), payment.getTransactionId(), request.getAmount());
-            boolean paymentSuccess = simulatePaymentProcessing(payment);
+            return sendToGateway(authorizationRequest);
+        });
+    }
+    
+    /**
+     * Sends the authorization to the gateway and records its latency, tagged with the outcome
+     */
+    private CompletableFuture<AuthorizationResult> sendToGateway(AuthorizationRequest authorizationRequest) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<AuthorizationResult> authorization;
+        try {
+            authorization = authorizationBatcher.isEnabled()
+                ? authorizationBatcher.submit(authorizationRequest)
+                : paymentGateway.authorize(authorizationRequest);
+        } catch (RuntimeException e) {
+            authorization = CompletableFuture.failedFuture(e);
+        }
+        return authorization.whenComplete((result, failure) -> {
+            String outcome = failure != null ? "error" : result.isApproved() ? "approved" : "declined";
+            sample.stop(Timer.builder("payment.gateway.authorization")
+                .description("Time from sending an authorization to the gateway's answer")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        });
+    }
+    
+    /**
+     * Completes the payment from the gateway's answer: commit the hold and mark it COMPLETED when approved,
+     * otherwise release the hold and mark it FAILED. Any failure that may leave an approved authorization
+     * behind also voids it.
+     */
+    private PaymentResponse settle(PaymentRequest request, Payment payment, Long holdId,
+                                   AuthorizationResult result, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = unwrap(failure);
+            logger.error("Gateway authorization failed for order: {} with transaction ID: {} - {}",
+                        request.getOrderId(), payment.getTransactionId(), cause.getMessage());
+            // A timeout or lost answer may still have been approved by the gateway
+            voidAuthorization(request, payment);
+            compensate(request, payment, true, holdId);
+            return failure("Payment processing error: " + cause.getMessage(), true);
+        }
+        
+        boolean paymentCompleted = false;
+        try {
+            if (!result.isApproved()) {
+                logger.warn("Payment declined for order: {} with transaction ID: {} - {}",
+                           request.getOrderId(), payment.getTransactionId(), result.getMessage());
+                releaseInventory(request, holdId);
+                transitionStatus(payment, "FAILED");
+                return new PaymentResponse(false, "Payment declined: " + result.getMessage());
+            }
             
-            if (paymentSuccess) {
-                payment.setStatus("COMPLETED");
-                Payment savedPayment = paymentRepository.save(payment);
-                logger.info("Payment completed successfully for order: {} with transaction ID: {} and payment ID: {}", 
-                           request.getOrderId(), savedPayment.getTransactionId(), savedPayment.getId());
-                
-                // Trigger async fraud detection and risk scoring - traced automatically by OpenTelemetry
-                logger.info("Triggering async fraud analysis for order: {}", request.getOrderId());
-                triggerAsyncFraudAnalysis(request);
-                
-                return new PaymentResponse(
-                    true,
-                    "Payment processed successfully",
-                    savedPayment.getId(),
-                    savedPayment.getTransactionId(),
-                    savedPayment.getAmount(),
-                    savedPayment.getStatus()
-                );
-            } else {
-                payment.setStatus("FAILED");
-                paymentRepository.save(payment);
-                logger.warn("Payment processing failed for order: {} with transaction ID: {}", 
-                           request.getOrderId(), payment.getTransactionId());
-                return new PaymentResponse(false, "Payment processing failed");
+            // The sale is final only once the hold is committed; otherwise it would expire and free the stock
+            String commitFailure = commitHold(request, holdId);
+            if (commitFailure != null) {
+                // The hold expired or was settled, so the stock is no longer ours and the charge must not stand
+                logger.warn("Inventory hold {} for order: {} could not be committed - {}",
+                           holdId, request.getOrderId(), commitFailure);
+                voidAuthorization(request, payment);
+                compensate(request, payment, true, holdId);
+                return failure("Failed to commit inventory hold: " + commitFailure, true);
             }
+            Payment savedPayment = transitionStatus(payment, "COMPLETED");
+            paymentCompleted = true;
+            logger.info("Payment completed successfully for order: {} with transaction ID: {} and payment ID: {}",
+                       request.getOrderId(), savedPayment.getTransactionId(), savedPayment.getId());
+            
+            // Trigger async fraud detection and risk scoring - traced automatically by OpenTelemetry
+            logger.info("Triggering async fraud analysis for order: {}", request.getOrderId());
+            triggerAsyncFraudAnalysis(request);
             
+            return new PaymentResponse(
+                true,
+                "Payment processed successfully",
+                savedPayment.getId(),
+                savedPayment.getTransactionId(),
+                savedPayment.getAmount(),
+                savedPayment.getStatus()
+            );
         } catch (Exception e) {
             logger.error("Payment processing failed with exception for order: {} - {}", 
                         request.getOrderId(), e.getMessage(), e);
-            return new PaymentResponse(false, "Payment processing error: " + e.getMessage());
+            if (!paymentCompleted) {
+                if (result.isApproved()) {
+                    voidAuthorization(request, payment);
+                }
+                compensate(request, payment, true, holdId);
+            }
+            // Once COMPLETED the charge stands, so a retry must not run the payment again
+            return failure("Payment processing error: " + e.getMessage(), !paymentCompleted);
         }
     }
     
-    private boolean simulatePaymentProcessing(Payment payment) {
-        // Simulate payment gateway call
-        // In real world, this would call external payment gateway
-        logger.debug("Simulating payment gateway call for transaction: {}", payment.getTransactionId());
+    /**
+     * Retryable failures are not stored against the Idempotency-Key, so the same key can run the payment again
+     */
+    private static PaymentResponse failure(String message, boolean retryable) {
+        PaymentResponse response = new PaymentResponse(false, message);
+        response.setRetryable(retryable);
+        return response;
+    }
+    
+    /**
+     * Best-effort release of an authorization that is or may be approved but will not be captured
+     */
+    private void voidAuthorization(PaymentRequest request, Payment payment) {
+        CompletableFuture<Void> voided;
         try {
-            Thread.sleep(100); // Simulate network delay
-            
-            // 95% success rate for demo purposes
-            boolean success = Math.random() > 0.05;
-            logger.debug("Payment gateway simulation result for transaction {}: {}", 
-                        payment.getTransactionId(), success ? "SUCCESS" : "FAILED");
-            return success;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.warn("Payment processing interrupted for transaction: {}", payment.getTransactionId());
-            return false;
+            voided = paymentGateway.voidAuthorization(payment.getTransactionId());
+        } catch (RuntimeException e) {
+            voided = CompletableFuture.failedFuture(e);
         }
+        voided.whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                logger.error("Failed to void authorization {} for order: {} - {}",
+                            payment.getTransactionId(), request.getOrderId(), unwrap(failure).getMessage());
+            } else {
+                logger.info("Voided authorization {} for order: {}", payment.getTransactionId(), request.getOrderId());
+            }
+        });
+    }
+    
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
     }
     
     /**
@@ -0,0 +1,267 @@
+package com.example.payment.service;
+
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.payment.dto.PaymentRequest;
+import com.example.payment.dto.VelocityFeatures;
+import com.example.payment.velocity.SlidingWindowCounter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Payment velocity per customer and per payment method: count and amount over the last minute, hour and day
+ * Every payment attempt is recorded in lock-free in-memory counters, so reading features costs no I/O.
+ * Each instance periodically publishes its own totals to Redis (hash velocity:{dimension}:{key}, one field per
+ * instance and window) and reads back the other instances' totals, which are added to its local counts.
+ * Other instances' totals are only read back when this instance syncs the key, and each one is dropped once it
+ * is older than its window, so the cross-instance part can lag but never keeps counting expired payments.
+ */
+@Component
+public class VelocityFeatureStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(VelocityFeatureStore.class);
+    
+    private static final String KEY_PREFIX = "velocity:";
+    private static final String CUSTOMER = "customer:";
+    private static final String PAYMENT_METHOD = "method:";
+    
+    // Minute, hour and day windows, in the order VelocityFeatures expects
+    private static final String[] WINDOW_NAMES = {"1m", "1h", "1d"};
+    private static final long[] WINDOW_MILLIS = {
+        Duration.ofMinutes(1).toMillis(), Duration.ofHours(1).toMillis(), Duration.ofDays(1).toMillis()
+    };
+    private static final int[] WINDOW_BUCKETS = {12, 12, 24};
+    private static final int WINDOWS = WINDOW_NAMES.length;
+    private static final long LONGEST_WINDOW_MILLIS = WINDOW_MILLIS[WINDOWS - 1];
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Value("${payment.velocity.sync-enabled:true}")
+    private boolean syncEnabled;
+    
+    // Bounds memory: attempts for keys beyond this are not tracked until idle keys are dropped
+    @Value("${payment.velocity.max-tracked-keys:100000}")
+    private int maxTrackedKeys;
+    
+    // Identifies this instance's fields in the shared hashes
+    private final String instanceId = UUID.randomUUID().toString();
+    
+    private final Map<String, TrackedKey> trackedKeys = new ConcurrentHashMap<>();
+    
+    public VelocityFeatureStore(MeterRegistry meterRegistry) {
+        Gauge.builder("payment.velocity.tracked.keys", trackedKeys, Map::size)
+            .description("Customers and payment methods with velocity counters in memory")
+            .register(meterRegistry);
+    }
+    
+    public void record(PaymentRequest request) {
+        long now = System.currentTimeMillis();
+        long amountCents = request.getAmount() != null
+            ? request.getAmount().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue()
+            : 0;
+        if (request.getCustomerName() != null) {
+            record(CUSTOMER + request.getCustomerName(), now, amountCents);
+        }
+        if (request.getPaymentMethod() != null) {
+            record(PAYMENT_METHOD + request.getPaymentMethod(), now, amountCents);
+        }
+    }
+    
+    public VelocityFeatures customerFeatures(String customerName) {
+        return customerName != null ? features(CUSTOMER + customerName) : new VelocityFeatures();
+    }
+    
+    public VelocityFeatures paymentMethodFeatures(String paymentMethod) {
+        return paymentMethod != null ? features(PAYMENT_METHOD + paymentMethod) : new VelocityFeatures();
+    }
+    
+    private void record(String key, long now, long amountCents) {
+        TrackedKey trackedKey = trackedKeys.get(key);
+        if (trackedKey == null) {
+            if (trackedKeys.size() >= maxTrackedKeys) {
+                logger.debug("Velocity key limit reached, not tracking: {}", key);
+                return;
+            }
+            trackedKey = trackedKeys.computeIfAbsent(key, k -> new TrackedKey());
+        }
+        trackedKey.record(now, amountCents);
+    }
+    
+    private VelocityFeatures features(String key) {
+        TrackedKey trackedKey = trackedKeys.get(key);
+        if (trackedKey == null) {
+            return new VelocityFeatures();
+        }
+        long now = System.currentTimeMillis();
+        long[] counts = new long[WINDOWS];
+        long[] amounts = new long[WINDOWS];
+        for (int window = 0; window < WINDOWS; window++) {
+            counts[window] = trackedKey.windows[window].count(now);
+            amounts[window] = trackedKey.windows[window].amount(now);
+        }
+        for (RemoteTotal total : trackedKey.remote) {
+            // Everything a total counted has left its window once the total is older than the window
+            if (now - total.publishedMillis <= WINDOW_MILLIS[total.window]) {
+                counts[total.window] += total.count;
+                amounts[total.window] += total.amount;
+            }
+        }
+        return new VelocityFeatures(counts, amounts);
+    }
+    
+    /**
+     * Drops keys idle for longer than the longest window, then exchanges totals with Redis for the keys that
+     * saw payments since the last sync: one pipelined write of this instance's fields, one pipelined read
+     * of the whole hashes
+     */
+    @Scheduled(fixedDelayString = "${payment.velocity.sync-interval:10s}")
+    public void sync() {
+        long now = System.currentTimeMillis();
+        trackedKeys.values().removeIf(trackedKey -> now - trackedKey.lastRecordedMillis > LONGEST_WINDOW_MILLIS);
+        if (!syncEnabled) {
+            return;
+        }
+        
+        List<String> keys = new ArrayList<>();
+        List<TrackedKey> changed = new ArrayList<>();
+        trackedKeys.forEach((key, trackedKey) -> {
+            if (trackedKey.dirty) {
+                trackedKey.dirty = false;
+                keys.add(key);
+                changed.add(trackedKey);
+            }
+        });
+        if (keys.isEmpty()) {
+            return;
+        }
+        
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> stringOperations = (RedisOperations<String, Object>) operations;
+                    for (int i = 0; i < keys.size(); i++) {
+                        Map<String, Object> fields = new HashMap<>();
+                        for (int window = 0; window < WINDOWS; window++) {
+                            SlidingWindowCounter counter = changed.get(i).windows[window];
+                            fields.put(instanceId + ":" + WINDOW_NAMES[window],
+                                       counter.count(now) + ":" + counter.amount(now) + ":" + now);
+                        }
+                        stringOperations.opsForHash().putAll(KEY_PREFIX + keys.get(i), fields);
+                        stringOperations.expire(KEY_PREFIX + keys.get(i), Duration.ofMillis(LONGEST_WINDOW_MILLIS));
+                    }
+                    return null;
+                }
+            });
+            
+            List<Object> hashes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> stringOperations = (RedisOperations<String, Object>) operations;
+                    for (String key : keys) {
+                        stringOperations.opsForHash().entries(KEY_PREFIX + key);
+                    }
+                    return null;
+                }
+            });
+            for (int i = 0; i < keys.size(); i++) {
+                changed.get(i).remote = remoteTotals((Map<?, ?>) hashes.get(i), now);
+            }
+            logger.debug("Synced velocity counters of {} keys with Redis", keys.size());
+        } catch (RuntimeException e) {
+            logger.warn("Velocity counter sync failed for {} keys - {}", keys.size(), e.getMessage());
+            changed.forEach(trackedKey -> trackedKey.dirty = true);
+        }
+    }
+    
+    /**
+     * Parses the other instances' fields, skipping totals published longer ago than their window
+     * (an instance that stopped)
+     */
+    private List<RemoteTotal> remoteTotals(Map<?, ?> fields, long now) {
+        List<RemoteTotal> remote = new ArrayList<>();
+        String ownPrefix = instanceId + ":";
+        for (Map.Entry<?, ?> field : fields.entrySet()) {
+            String name = String.valueOf(field.getKey());
+            if (name.startsWith(ownPrefix)) {
+                continue;
+            }
+            int window = windowIndex(name.substring(name.lastIndexOf(':') + 1));
+            String[] totals = String.valueOf(field.getValue()).split(":");
+            if (window < 0 || totals.length != 3 || now - Long.parseLong(totals[2]) > WINDOW_MILLIS[window]) {
+                continue;
+            }
+            remote.add(new RemoteTotal(window, Long.parseLong(totals[0]), Long.parseLong(totals[1]),
+                                       Long.parseLong(totals[2])));
+        }
+        return remote;
+    }
+    
+    private static int windowIndex(String name) {
+        for (int window = 0; window < WINDOWS; window++) {
+            if (WINDOW_NAMES[window].equals(name)) {
+                return window;
+            }
+        }
+        return -1;
+    }
+    
+    private static final class TrackedKey {
+        private final SlidingWindowCounter[] windows = new SlidingWindowCounter[WINDOWS];
+        // Other instances' totals as of the last sync of this key
+        private volatile List<RemoteTotal> remote = List.of();
+        private volatile long lastRecordedMillis;
+        private volatile boolean dirty;
+        
+        TrackedKey() {
+            for (int window = 0; window < WINDOWS; window++) {
+                windows[window] = new SlidingWindowCounter(WINDOW_MILLIS[window], WINDOW_BUCKETS[window]);
+            }
+        }
+        
+        void record(long now, long amountCents) {
+            for (SlidingWindowCounter window : windows) {
+                window.record(now, amountCents);
+            }
+            lastRecordedMillis = now;
+            dirty = true;
+        }
+    }
+    
+    // One other instance's count and amount for one window, as published at publishedMillis
+    private static final class RemoteTotal {
+        private final int window;
+        private final long count;
+        private final long amount;
+        private final long publishedMillis;
+        
+        RemoteTotal(int window, long count, long amount, long publishedMillis) {
+            this.window = window;
+            this.count = count;
+            this.amount = amount;
+            this.publishedMillis = publishedMillis;
+        }
+    }
+}
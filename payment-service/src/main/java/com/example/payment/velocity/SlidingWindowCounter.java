@@ -0,0 +1,74 @@
+package com.example.payment.velocity;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Event count and summed amount over a sliding time window, kept in a ring of fixed-width buckets
+ * Lock-free: when a slot comes round again its bucket is replaced by compare-and-set, and events inside the
+ * current bucket are atomic adds. The window slides one bucket at a time, so totals cover the current
+ * (partial) bucket plus the buckets - 1 before it.
+ */
+public class SlidingWindowCounter {
+    
+    private final long bucketMillis;
+    private final AtomicReferenceArray<Bucket> ring;
+    
+    public SlidingWindowCounter(long windowMillis, int buckets) {
+        this.bucketMillis = Math.max(1, windowMillis / buckets);
+        this.ring = new AtomicReferenceArray<>(buckets);
+    }
+    
+    public void record(long nowMillis, long amount) {
+        long epoch = nowMillis / bucketMillis;
+        int slot = (int) Math.floorMod(epoch, (long) ring.length());
+        while (true) {
+            Bucket bucket = ring.get(slot);
+            if (bucket != null && bucket.epoch == epoch) {
+                bucket.count.incrementAndGet();
+                bucket.amount.addAndGet(amount);
+                return;
+            }
+            if (bucket != null && bucket.epoch > epoch) {
+                // A full ring older than the bucket already in the slot: outside the window
+                return;
+            }
+            // Losing the race means another thread installed the bucket; retry against it
+            ring.compareAndSet(slot, bucket, new Bucket(epoch));
+        }
+    }
+    
+    public long count(long nowMillis) {
+        long oldestEpoch = nowMillis / bucketMillis - ring.length();
+        long count = 0;
+        for (int slot = 0; slot < ring.length(); slot++) {
+            Bucket bucket = ring.get(slot);
+            if (bucket != null && bucket.epoch > oldestEpoch) {
+                count += bucket.count.get();
+            }
+        }
+        return count;
+    }
+    
+    public long amount(long nowMillis) {
+        long oldestEpoch = nowMillis / bucketMillis - ring.length();
+        long amount = 0;
+        for (int slot = 0; slot < ring.length(); slot++) {
+            Bucket bucket = ring.get(slot);
+            if (bucket != null && bucket.epoch > oldestEpoch) {
+                amount += bucket.amount.get();
+            }
+        }
+        return amount;
+    }
+    
+    private static final class Bucket {
+        private final long epoch;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong amount = new AtomicLong();
+        
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+-- Take the in-flight lock of an Idempotency-Key and record the fingerprint of the request that owns it
+-- KEYS[1] key, KEYS[2] fingerprint key
+-- ARGV[1] in-flight marker, ARGV[2] request fingerprint, ARGV[3] lock TTL in ms, ARGV[4] fingerprint TTL in ms
+-- Returns 1 when the lock was taken, 0 when the key is already held
+if not redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[3]) then
+    return 0
+end
+redis.call('SET', KEYS[2], ARGV[2], 'PX', ARGV[4])
+return 1
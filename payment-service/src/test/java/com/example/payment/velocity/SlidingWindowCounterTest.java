@@ -0,0 +1,111 @@
+package com.example.payment.velocity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowCounterTest {
+    
+    // 1 s window in ten 100 ms buckets
+    private static final long WINDOW = 1_000;
+    private static final int BUCKETS = 10;
+    
+    @Test
+    void sumsEventsInsideTheWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW, BUCKETS);
+        counter.record(0, 100);
+        counter.record(50, 200);
+        counter.record(450, 300);
+        
+        assertThat(counter.count(500)).isEqualTo(3);
+        assertThat(counter.amount(500)).isEqualTo(600);
+    }
+    
+    @Test
+    void eventsLeaveTheWindowOneBucketAtATime() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW, BUCKETS);
+        counter.record(0, 100);
+        counter.record(150, 200);
+        
+        assertThat(counter.count(999)).isEqualTo(2);
+        // The bucket of t=0 drops out at the start of the bucket a full window later
+        assertThat(counter.count(1_000)).isEqualTo(1);
+        assertThat(counter.amount(1_000)).isEqualTo(200);
+        assertThat(counter.count(1_100)).isZero();
+        assertThat(counter.amount(1_100)).isZero();
+    }
+    
+    @Test
+    void reusesASlotForTheNextEpoch() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW, BUCKETS);
+        counter.record(50, 100);
+        counter.record(60, 100);
+        
+        // Same slot a full ring later: the old bucket is replaced, not added to
+        counter.record(1_050, 7);
+        
+        assertThat(counter.count(1_050)).isEqualTo(1);
+        assertThat(counter.amount(1_050)).isEqualTo(7);
+    }
+    
+    @Test
+    void reusesSlotsAcrossManyEpochs() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW, BUCKETS);
+        for (long now = 0; now < 10_000; now += 50) {
+            counter.record(now, 1);
+        }
+        
+        // Two events per 100 ms bucket, ten buckets in the window
+        assertThat(counter.count(9_999)).isEqualTo(20);
+        assertThat(counter.amount(9_999)).isEqualTo(20);
+    }
+    
+    @Test
+    void ignoresALateEventOlderThanItsSlot() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW, BUCKETS);
+        counter.record(1_050, 5);
+        
+        // Epoch 0 maps to the slot now holding epoch 10, so it is a full window old
+        counter.record(50, 1_000);
+        
+        assertThat(counter.count(1_050)).isEqualTo(1);
+        assertThat(counter.amount(1_050)).isEqualTo(5);
+    }
+    
+    @Test
+    void countsEveryConcurrentEvent() throws InterruptedException {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW, BUCKETS);
+        int threads = 8;
+        int eventsPerThread = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        
+        List<Thread> recorders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread recorder = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                // Spread over two buckets so threads also race to install the next one
+                for (int i = 0; i < eventsPerThread; i++) {
+                    counter.record(i % 2 == 0 ? 150 : 250, 3);
+                }
+            });
+            recorder.start();
+            recorders.add(recorder);
+        }
+        start.countDown();
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+        
+        assertThat(counter.count(300)).isEqualTo((long) threads * eventsPerThread);
+        assertThat(counter.amount(300)).isEqualTo(3L * threads * eventsPerThread);
+    }
+}